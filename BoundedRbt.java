@@ -0,0 +1,235 @@
+/**
+ * Description: A red-black tree with a size limit and expiring keys.
+ * Every write evicts a few keys: first any keys over the size limit, from the
+ * smallest end of the tree, then keys whose time to live has run out.
+ * There is no background thread and no full sweep. The work is spread over the writes.
+ * Every key has the same time to live, so keys expire in the order they were last
+ * inserted. The nodes are linked in that order as well, and expired keys are taken
+ * from the front of that list, whatever their place in the tree.
+ */
+
+
+class BoundedRbt extends Rbt {
+    // Use for maxSize or ttlMillis to turn that limit off
+    public static final int NO_LIMIT = 0;
+
+    // Default number of keys to evict on each write
+    public static final int DEFAULT_EVICT_BATCH = 8;
+
+    // The largest size the tree is kept to, or NO_LIMIT
+    private final int maxSize;
+
+    // Time to live for every key, in nanoseconds, or NO_LIMIT
+    private final long ttlNanos;
+
+    // The nodes in the order they expire, when there is a time to live
+    private TimedRbtNode oldest;
+    private TimedRbtNode newest;
+
+    // The most keys evicted on one write
+    private final int evictBatch;
+
+    // Number of keys evicted since the tree was created
+    private long evicted;
+
+    /**
+     * Creates a bounded tree that evicts DEFAULT_EVICT_BATCH keys per write.
+     * @param maxSize The largest size to keep the tree to, or NO_LIMIT.
+     * @param ttlMillis How long a key lives after it is inserted, or NO_LIMIT.
+     */
+    public BoundedRbt(int maxSize, long ttlMillis){
+        this(maxSize, ttlMillis, DEFAULT_EVICT_BATCH);
+    }
+
+    /**
+     * Creates a bounded tree.
+     * @param maxSize The largest size to keep the tree to, or NO_LIMIT.
+     * @param ttlMillis How long a key lives after it is inserted, or NO_LIMIT.
+     * @param evictBatch The most keys to evict on one write.
+     */
+    public BoundedRbt(int maxSize, long ttlMillis, int evictBatch){
+        if(maxSize < 0 || ttlMillis < 0 || evictBatch < 1){
+            throw new IllegalArgumentException("Limits can not be negative and the batch must be at least 1");
+        }
+        // A longer time to live would wrap around to negative nanoseconds
+        if(ttlMillis > Long.MAX_VALUE / 1_000_000L){
+            throw new IllegalArgumentException("The time to live can be at most " + Long.MAX_VALUE / 1_000_000L + " ms");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.evictBatch = evictBatch;
+    }
+
+    /**
+     * Inserts data, then evicts a batch of keys.
+     * Inserting data that is already in the tree renews its time to live.
+     * @param data The data to insert into the tree.
+     */
+    @Override
+    public void insert(int data){
+        RbtNode inserted = insertNode(data);
+        if(ttlNanos != NO_LIMIT){
+            TimedRbtNode node = (TimedRbtNode) inserted;
+            node.setExpiresAt(System.nanoTime() + ttlNanos);
+            // The node now expires last, so it moves to the back of the list
+            dequeue(node);
+            enqueue(node);
+        }
+        evict();
+    }
+
+    /**
+     * Deletes data from the tree, then evicts a batch of keys.
+     * @param data The data to delete from the tree.
+     */
+    @Override
+    public void delete(int data){
+        super.delete(data);
+        evict();
+    }
+
+    /**
+     * Evicts up to one batch of keys.
+     * Keys over the size limit go first from the smallest end, then expired keys.
+     * Called on every write, but can also be called to catch up on a quiet tree.
+     * @return The number of keys evicted.
+     */
+    public int evict(){
+        int count = 0;
+
+        // Walk forward from the smallest key, so each eviction does not search again
+        if(maxSize != NO_LIMIT){
+            RbtNode cur = minNode(root);
+            while(size > maxSize && count < evictBatch){
+                RbtNode next = nextNode(cur);
+                unlink(cur);
+                cur = next;
+                count++;
+            }
+        }
+
+        // The list is in expiry order, so stop at the first key still alive
+        long now = System.nanoTime();
+        while(oldest != null && oldest.isExpired(now) && count < evictBatch){
+            unlink(oldest);
+            count++;
+        }
+
+        evicted += count;
+        return count;
+    }
+
+    /**
+     * Returns the number of keys evicted since the tree was created.
+     * @return The number of evicted keys.
+     */
+    public long evicted(){
+        return this.evicted;
+    }
+
+    /**
+     * Creates a node that can hold an expiry time, or a plain node when keys do not expire.
+     * @param data The data for the node.
+     * @return A new node.
+     */
+    @Override
+    protected RbtNode createNode(int data){
+        if(ttlNanos == NO_LIMIT){
+            return super.createNode(data);
+        }
+        return new TimedRbtNode(data);
+    }
+
+    /**
+     * Unlinks a node and takes it out of the expiry list.
+     * @param node The node to remove.
+     */
+    @Override
+    protected void unlink(RbtNode node){
+        if(ttlNanos != NO_LIMIT){
+            dequeue((TimedRbtNode) node);
+        }
+        super.unlink(node);
+    }
+
+    /**
+     * Adds a node to the back of the expiry list.
+     * @param node A node that is not in the list.
+     */
+    private void enqueue(TimedRbtNode node){
+        node.setOlder(newest);
+        if(newest == null){
+            oldest = node;
+        } else{
+            newest.setNewer(node);
+        }
+        newest = node;
+    }
+
+    /**
+     * Takes a node out of the expiry list if it is in it.
+     * @param node The node.
+     */
+    private void dequeue(TimedRbtNode node){
+        if(node.getOlder() == null && node != oldest){
+            return;
+        }
+        if(node.getOlder() == null){
+            oldest = node.getNewer();
+        } else{
+            node.getOlder().setNewer(node.getNewer());
+        }
+        if(node.getNewer() == null){
+            newest = node.getOlder();
+        } else{
+            node.getNewer().setOlder(node.getOlder());
+        }
+        node.setOlder(null);
+        node.setNewer(null);
+    }
+}
+
+
+
+
+class TimedRbtNode extends RbtNode{
+
+    private long expiresAt; // The nanoTime the node expires at
+    private TimedRbtNode older; // The node that expires before this one
+    private TimedRbtNode newer; // The node that expires after this one
+
+    /**
+     * Creates a node that never expires.
+     * @param data
+     */
+    public TimedRbtNode(int data){
+        super(data);
+        this.expiresAt = Long.MAX_VALUE;
+    }
+
+    // Accessors
+    public long getExpiresAt(){
+        return this.expiresAt;
+    }
+    public TimedRbtNode getOlder(){
+        return this.older;
+    }
+    public TimedRbtNode getNewer(){
+        return this.newer;
+    }
+    public boolean isExpired(long now){
+        // Compare by difference, since nanoTime can wrap
+        return this.expiresAt != Long.MAX_VALUE && now - this.expiresAt >= 0;
+    }
+
+    // Mutators
+    public void setExpiresAt(long expiresAt){
+        this.expiresAt = expiresAt;
+    }
+    public void setOlder(TimedRbtNode older){
+        this.older = older;
+    }
+    public void setNewer(TimedRbtNode newer){
+        this.newer = newer;
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Description: An interval tree built on the red-black tree.
+ * Each node holds a closed interval [lo, hi] and is ordered by lo, then by hi.
+ * Each node also keeps the largest hi in its subtree, which lets overlap
+ * queries skip every subtree that ends before the query starts.
+ */
+
+
+class IntervalRbt extends RbtBase {
+
+    public IntervalRbt(){
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Inserts an interval into the tree.
+     * Checks for violations in the red property after insertion.
+     * Inserting an interval that is already in the tree does nothing.
+     * @param lo The start of the interval.
+     * @param hi The end of the interval, inclusive.
+     * @throws IllegalArgumentException If lo is greater than hi.
+     */
+    public void insert(long lo, long hi){
+        checkInterval(lo, hi);
+
+        IntervalRbtNode cur = (IntervalRbtNode) root;
+        IntervalRbtNode prev = null;
+        int cmp = 0;
+
+        // Travel down the tree, raising the max endpoint of every node on the path.
+        // If the interval is already in the tree these endpoints already cover it.
+        while(cur != null){
+            prev = cur;
+            if(cur.getMaxHi() < hi){
+                cur.setMaxHi(hi);
+            }
+
+            cmp = compare(lo, hi, cur);
+            if(cmp < 0){
+                cur = (IntervalRbtNode) cur.getLeft();
+            } else if(cmp > 0){
+                cur = (IntervalRbtNode) cur.getRight();
+            }
+            // The interval is already in the tree
+            else{
+                return;
+            }
+        }
+
+        // Create the new node at the correct leaf
+        link(prev, new IntervalRbtNode(lo, hi), cmp < 0);
+    }
+
+    /**
+     * Deletes an interval from the tree.
+     * Checks for violations in the black property after deletion.
+     * @param lo The start of the interval.
+     * @param hi The end of the interval, inclusive.
+     */
+    public void delete(long lo, long hi){
+        IntervalRbtNode cur = findNode(lo, hi);
+
+        // If the node is not found, return
+        if(cur == null){
+            return;
+        }
+
+        unlink(cur);
+    }
+
+    /**
+     * Searches for an exact interval in the tree.
+     * @param lo The start of the interval.
+     * @param hi The end of the interval, inclusive.
+     * @return True if the interval is found, false otherwise.
+     */
+    public boolean search(long lo, long hi){
+        return findNode(lo, hi) != null;
+    }
+
+    /**
+     * Passes every interval that overlaps [lo, hi] to the action, ordered by start.
+     * Runs in O(min(n, k log n)) for k matches, since each match can cost its own path down the tree.
+     * @param lo The start of the query.
+     * @param hi The end of the query, inclusive.
+     * @param action The action to run on each overlapping interval.
+     * @throws IllegalArgumentException If lo is greater than hi.
+     */
+    public void overlapping(long lo, long hi, IntervalConsumer action){
+        checkInterval(lo, hi);
+        overlapping((IntervalRbtNode) root, lo, hi, action);
+    }
+
+    /**
+     * Passes every interval that contains the point to the action, ordered by start.
+     * @param point The point to check.
+     * @param action The action to run on each interval containing the point.
+     */
+    public void stab(long point, IntervalConsumer action){
+        overlapping((IntervalRbtNode) root, point, point, action);
+    }
+
+    /**
+     * A helper method to find the overlapping intervals of a subtree in order.
+     * @param cur The current node to search from.
+     * @param lo The start of the query.
+     * @param hi The end of the query, inclusive.
+     * @param action The action to run on each overlapping interval.
+     */
+    private void overlapping(IntervalRbtNode cur, long lo, long hi, IntervalConsumer action){
+        // Nothing in this subtree ends at or after the query start
+        if(cur == null || cur.getMaxHi() < lo){
+            return;
+        }
+
+        overlapping((IntervalRbtNode) cur.getLeft(), lo, hi, action);
+
+        // This node and everything to the right of it starts after the query ends
+        if(cur.getLo() > hi){
+            return;
+        }
+        if(cur.getHi() >= lo){
+            action.accept(cur.getLo(), cur.getHi());
+        }
+
+        overlapping((IntervalRbtNode) cur.getRight(), lo, hi, action);
+    }
+
+    /**
+     * Recomputes the max endpoint of a node from its interval and its children.
+     * @param node The node to update.
+     */
+    @Override
+    protected void updateAugment(RbtNode node){
+        IntervalRbtNode cur = (IntervalRbtNode) node;
+        long maxHi = cur.getHi();
+
+        if(cur.getLeft() != null){
+            maxHi = Math.max(maxHi, ((IntervalRbtNode) cur.getLeft()).getMaxHi());
+        }
+        if(cur.getRight() != null){
+            maxHi = Math.max(maxHi, ((IntervalRbtNode) cur.getRight()).getMaxHi());
+        }
+        cur.setMaxHi(maxHi);
+    }
+
+    /**
+     * Recomputes the max endpoints from the node up to the root.
+     * @param node The lowest node whose subtree changed, may be null.
+     */
+    @Override
+    protected void updateAugmentPath(RbtNode node){
+        while(node != null){
+            updateAugment(node);
+            node = node.getParent();
+        }
+    }
+
+    /**
+     * Finds the node holding the given interval.
+     * @param lo The start of the interval.
+     * @param hi The end of the interval, inclusive.
+     * @return The node with the interval, or null if it is not in the tree.
+     */
+    private IntervalRbtNode findNode(long lo, long hi){
+        IntervalRbtNode cur = (IntervalRbtNode) root;
+        while(cur != null){
+            int cmp = compare(lo, hi, cur);
+            if(cmp == 0){
+                return cur;
+            } else if(cmp < 0){
+                cur = (IntervalRbtNode) cur.getLeft();
+            } else{
+                cur = (IntervalRbtNode) cur.getRight();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares an interval to the interval of a node, by start and then by end.
+     * @param lo The start of the interval.
+     * @param hi The end of the interval.
+     * @param node The node to compare against.
+     * @return Less than zero, zero, or greater than zero like a comparator.
+     */
+    private static int compare(long lo, long hi, IntervalRbtNode node){
+        if(lo != node.getLo()){
+            return lo < node.getLo() ? -1 : 1;
+        }
+        return Long.compare(hi, node.getHi());
+    }
+
+    /**
+     * Checks that an interval is not backwards.
+     * @param lo The start of the interval.
+     * @param hi The end of the interval.
+     */
+    private static void checkInterval(long lo, long hi){
+        if(lo > hi){
+            throw new IllegalArgumentException("Interval start " + lo + " is after its end " + hi);
+        }
+    }
+}
+
+
+
+
+/**
+ * Receives intervals from an IntervalRbt query without boxing them.
+ */
+interface IntervalConsumer{
+    void accept(long lo, long hi);
+}
+
+
+
+
+class IntervalRbtNode extends RbtNode{
+
+    private long lo; // Start of the interval
+    private long hi; // End of the interval, inclusive
+    private long maxHi; // The largest end in this subtree
+
+    /**
+     * Creates a node for an interval tree.
+     * The int data of the base node is unused.
+     * @param lo
+     * @param hi
+     */
+    public IntervalRbtNode(long lo, long hi){
+        super(0);
+        this.lo = lo;
+        this.hi = hi;
+        this.maxHi = hi;
+    }
+
+    // Accessors
+    public long getLo(){
+        return this.lo;
+    }
+    public long getHi(){
+        return this.hi;
+    }
+    public long getMaxHi(){
+        return this.maxHi;
+    }
+
+    // Mutators
+    public void setMaxHi(long maxHi){
+        this.maxHi = maxHi;
+    }
+}
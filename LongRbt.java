@@ -0,0 +1,180 @@
+/**
+ * Description: A red-black tree keyed by 64-bit longs.
+ * Uses the same balancing core as Rbt. Keys are kept as primitives so searching,
+ * inserting and walking the tree never box a value.
+ * min() and max() throw when the tree is empty instead of returning a sentinel,
+ * since every long is a valid key.
+ */
+
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+
+class LongRbt extends RbtBase {
+
+    // A string to hold the values of the tree in order
+    private StringBuilder orderedString = new StringBuilder();
+
+    public LongRbt(){
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Inserts a key into the tree.
+     * Checks for violations in the red property after insertion.
+     * Inserting a key that is already in the tree does nothing.
+     * @param key The key to insert into the tree.
+     */
+    public void insert(long key){
+        LongRbtNode cur = (LongRbtNode) root;
+        LongRbtNode prev = null;
+
+        // Travel down the tree
+        while(cur != null){
+            prev = cur;
+
+            // If the key is smaller than the current key, go left
+            if(key < cur.getKey()){
+                cur = (LongRbtNode) cur.getLeft();
+            }
+            // If the key is greater than the current key, go right
+            else if(key > cur.getKey()){
+                cur = (LongRbtNode) cur.getRight();
+            }
+            // The key is already in the tree
+            else{
+                return;
+            }
+        }
+
+        // Create the new node at the correct leaf
+        link(prev, new LongRbtNode(key), prev != null && key < prev.getKey());
+    }
+
+    /**
+     * Deletes a key from the tree.
+     * Checks for violations in the black property after deletion.
+     * @param key The key to delete from the tree.
+     */
+    public void delete(long key){
+        LongRbtNode cur = findNode(key);
+
+        // If the node is not found, return
+        if(cur == null){
+            return;
+        }
+
+        unlink(cur);
+    }
+
+    /**
+     * Searches for a key in the tree.
+     * @param key The key to search for.
+     * @return True if the key is found, false otherwise.
+     */
+    public boolean search(long key){
+        return findNode(key) != null;
+    }
+
+    /**
+     * Returns the smallest key in the tree.
+     * @return The smallest key in the tree.
+     * @throws NoSuchElementException If the tree is empty.
+     */
+    public long min(){
+        if(root == null){
+            throw new NoSuchElementException("The tree is empty");
+        }
+        return ((LongRbtNode) minNode(root)).getKey();
+    }
+
+    /**
+     * Returns the largest key in the tree.
+     * @return The largest key in the tree.
+     * @throws NoSuchElementException If the tree is empty.
+     */
+    public long max(){
+        if(root == null){
+            throw new NoSuchElementException("The tree is empty");
+        }
+        return ((LongRbtNode) maxNode(root)).getKey();
+    }
+
+    /**
+     * Passes every key in the tree to the action in order.
+     * Walks the parent links, so it uses no stack and allocates nothing.
+     * @param action The action to run on each key.
+     */
+    public void forEach(LongConsumer action){
+        for(RbtNode cur = minNode(root); cur != null; cur = nextNode(cur)){
+            action.accept(((LongRbtNode) cur).getKey());
+        }
+    }
+
+    /**
+     * Returns a string of the keys in the tree in order.
+     * @return A string of the keys in the tree in order.
+     */
+    public String inorder(){
+        if(root == null){
+            return " ";
+        }
+        orderedString.setLength(0);
+        forEach(key -> orderedString.append(key).append(' '));
+        return orderedString.toString();
+    }
+
+    /**
+     * Finds the node holding the given key.
+     * @param key The key to find.
+     * @return The node with the key, or null if it is not in the tree.
+     */
+    private LongRbtNode findNode(long key){
+        LongRbtNode cur = (LongRbtNode) root;
+        while(cur != null){
+            // If the key is found, return the node
+            if(cur.getKey() == key){
+                return cur;
+            }
+            // If the key is less than the current key, go left
+            else if(key < cur.getKey()){
+                cur = (LongRbtNode) cur.getLeft();
+            }
+            // If the key is more than the current key, go right
+            else{
+                cur = (LongRbtNode) cur.getRight();
+            }
+        }
+        return null;
+    }
+}
+
+
+
+
+class LongRbtNode extends RbtNode{
+
+    private long key; // Key
+
+    /**
+     * Creates a node for a long keyed Red Black Tree.
+     * The int data of the base node is unused. With compressed pointers it fills the
+     * gap after the object header, so the node is 40 bytes with or without it.
+     * @param key
+     */
+    public LongRbtNode(long key){
+        super(0);
+        this.key = key;
+    }
+
+    // Accessors
+    public long getKey(){
+        return this.key;
+    }
+
+    // Mutators
+    public void setKey(long key){
+        this.key = key;
+    }
+}
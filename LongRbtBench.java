@@ -0,0 +1,194 @@
+/**
+ * Description: Compares LongRbt with the int keyed Rbt and a boxed TreeSet<Long>.
+ * Each round inserts the same random keys, searches for every one, walks them in
+ * order and deletes them again. For each step it prints the time per key and the
+ * bytes allocated per key. Rbt and LongRbt should only allocate their nodes on
+ * insert, while the TreeSet also keeps a boxed Long for every key.
+ *
+ * Usage: LongRbtBench [keys] [rounds]
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+
+class LongRbtBench {
+    // The steps of a round
+    private static final String[] STEPS = {"insert", "search", "forEach", "delete"};
+
+    // Keeps the JIT from dropping the work
+    private static long sink;
+
+    /**
+     * Runs one round on an Rbt.
+     * @param keys The keys.
+     * @param nanos The time of each step, added to.
+     * @param bytes The bytes allocated in each step, added to.
+     */
+    private static void roundRbt(int[] keys, long[] nanos, long[] bytes){
+        Rbt tree = new Rbt();
+        long mark = start(nanos, bytes, 0);
+        for(int key : keys){
+            tree.insert(key);
+        }
+        mark = step(nanos, bytes, 0, mark);
+        for(int key : keys){
+            sink += tree.search(key) ? 1 : 0;
+        }
+        mark = step(nanos, bytes, 1, mark);
+        RbtCursor cursor = tree.cursor();
+        while(cursor.hasNext()){
+            sink += cursor.next();
+        }
+        mark = step(nanos, bytes, 2, mark);
+        for(int key : keys){
+            tree.delete(key);
+        }
+        step(nanos, bytes, 3, mark);
+    }
+
+    /**
+     * Runs one round on a LongRbt.
+     * @param keys The keys.
+     * @param nanos The time of each step, added to.
+     * @param bytes The bytes allocated in each step, added to.
+     */
+    private static void roundLong(long[] keys, long[] nanos, long[] bytes){
+        LongRbt tree = new LongRbt();
+        long mark = start(nanos, bytes, 0);
+        for(long key : keys){
+            tree.insert(key);
+        }
+        mark = step(nanos, bytes, 0, mark);
+        for(long key : keys){
+            sink += tree.search(key) ? 1 : 0;
+        }
+        mark = step(nanos, bytes, 1, mark);
+        tree.forEach(key -> sink += key);
+        mark = step(nanos, bytes, 2, mark);
+        for(long key : keys){
+            tree.delete(key);
+        }
+        step(nanos, bytes, 3, mark);
+    }
+
+    /**
+     * Runs one round on a TreeSet of boxed longs.
+     * @param keys The keys.
+     * @param nanos The time of each step, added to.
+     * @param bytes The bytes allocated in each step, added to.
+     */
+    private static void roundTreeSet(long[] keys, long[] nanos, long[] bytes){
+        TreeSet<Long> tree = new TreeSet<>();
+        long mark = start(nanos, bytes, 0);
+        for(long key : keys){
+            tree.add(key);
+        }
+        mark = step(nanos, bytes, 0, mark);
+        for(long key : keys){
+            sink += tree.contains(key) ? 1 : 0;
+        }
+        mark = step(nanos, bytes, 1, mark);
+        for(long key : tree){
+            sink += key;
+        }
+        mark = step(nanos, bytes, 2, mark);
+        for(long key : keys){
+            tree.remove(key);
+        }
+        step(nanos, bytes, 3, mark);
+    }
+
+    /**
+     * Starts timing the first step.
+     * @param nanos The time of each step.
+     * @param bytes The bytes allocated in each step.
+     * @param index The step.
+     * @return The nanoTime the step started at.
+     */
+    private static long start(long[] nanos, long[] bytes, int index){
+        bytes[index] -= allocatedBytes();
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends one step and starts the next.
+     * @param nanos The time of each step.
+     * @param bytes The bytes allocated in each step.
+     * @param index The step that ended.
+     * @param mark The nanoTime the step started at.
+     * @return The nanoTime the next step starts at.
+     */
+    private static long step(long[] nanos, long[] bytes, int index, long mark){
+        long now = System.nanoTime();
+        long allocated = allocatedBytes();
+        nanos[index] += now - mark;
+        bytes[index] += allocated;
+        if(index + 1 < STEPS.length){
+            bytes[index + 1] -= allocated;
+        }
+        return now;
+    }
+
+    /**
+     * Prints the time and allocation per key of each step.
+     * @param name The name of the tree.
+     * @param nanos The time of each step over every round.
+     * @param bytes The bytes allocated in each step over every round.
+     * @param perStep The number of keys handled in each step over every round.
+     */
+    private static void print(String name, long[] nanos, long[] bytes, long perStep){
+        StringBuilder line = new StringBuilder(String.format("%-8s", name));
+        for(int i = 0; i < STEPS.length; i++){
+            line.append(String.format("  %s %6.1f ns %5.1f B", STEPS[i], nanos[i] / (double) perStep, bytes[i] / (double) perStep));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Returns the bytes allocated by this thread so far, or 0 if the JVM can not tell.
+     * @return The allocated bytes.
+     */
+    private static long allocatedBytes(){
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean){
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    public static void main(String[] args){
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // The same keys for every tree, spread over the int range so they fit in Rbt too
+        SplittableRandom random = new SplittableRandom(42);
+        int[] ints = new int[count];
+        long[] longs = new long[count];
+        for(int i = 0; i < count; i++){
+            ints[i] = random.nextInt();
+            longs[i] = ints[i];
+        }
+
+        System.out.printf("%,d keys, %d rounds after %d warm up rounds%n", count, rounds, rounds);
+        long[][] nanos = new long[3][STEPS.length];
+        long[][] bytes = new long[3][STEPS.length];
+        for(int round = 0; round < 2 * rounds; round++){
+            // Throw the warm up rounds away
+            if(round == rounds){
+                nanos = new long[3][STEPS.length];
+                bytes = new long[3][STEPS.length];
+            }
+            roundRbt(ints, nanos[0], bytes[0]);
+            roundLong(longs, nanos[1], bytes[1]);
+            roundTreeSet(longs, nanos[2], bytes[2]);
+        }
+
+        long perStep = (long) count * rounds;
+        print("Rbt", nanos[0], bytes[0], perStep);
+        print("LongRbt", nanos[1], bytes[1], perStep);
+        print("TreeSet", nanos[2], bytes[2], perStep);
+        System.out.println("Checksum " + sink);
+    }
+}
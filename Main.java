@@ -1,5 +1,11 @@
 public class Main {
-    public static void main(String[] args){
+    public static void main(String[] args) throws java.io.IOException{
+        // Run headless as a server with: Main serve tcp [host:]port | Main serve unix path
+        if(args.length > 0 && args[0].equals("serve")){
+            RbtServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         Rbt tree = new Rbt();
 
         // Load some initial data
@@ -7,11 +13,25 @@ public class Main {
         tree.insert(15);
         tree.insert(2);
 
+        // Vis draws every node and stops at a height of 5, so bigger trees get the summarized view.
+        // Start in it whatever the size with: Main view
+        boolean viewOnly = args.length > 0 && args[0].equals("view");
+        TreeView view = new TreeView(tree, System.out);
+        TreeViewMenu viewMenu = new TreeViewMenu(tree, view, System.out);
+        java.util.Scanner input = TreeViewMenu.visInput();
+
         // Show the tree
         while(true) {
-            Vis.showTree(tree);
-            if(!Vis.showMenu(tree)){
-                break;
+            if(!viewOnly && TreeView.fitsVis(tree)){
+                Vis.showTree(tree);
+                if(!Vis.showMenu(tree)){
+                    break;
+                }
+            } else{
+                viewMenu.showTree();
+                if(!viewMenu.showMenu(input)){
+                    break;
+                }
             }
         }
     }
@@ -6,572 +6,194 @@
  * The tree is balanced by checking for violations in the red property and rotating when necessary.            
  */
 
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
 
-class Rbt {
-    // Root node (public for the vizualization)
-    public RbtNode root;
 
-    // Size of the tree
-    private int size;
+class Rbt extends RbtBase {
+
+    // Inserts in a row that landed at the max node before append mode starts
+    public static final int APPEND_RUN = 4;
 
     // A string to hold the values of the tree in order
     private StringBuilder orderedString = new StringBuilder();
 
+    // Recycles deleted nodes into new inserts, may be null
+    private final RbtNodePool pool;
+
+    // The max node while in append mode
+    private RbtNode rightmost;
+
+    // Inserts in a row that landed at the max node, and whether appends go straight to it
+    private int ascendingRun;
+    private boolean appendMode;
+
+    // Appends that took the fast path, and appends that fell back to a search
+    private long appendHits;
+    private long appendMisses;
+
     public Rbt(){
+        this(null);
+    }
+
+    /**
+     * Creates a tree that takes its nodes from a pool and gives deleted nodes back to it.
+     * @param pool The pool, or null to allocate every node.
+     */
+    public Rbt(RbtNodePool pool){
         this.root = null;
         this.size = 0;
+        this.pool = pool;
     }
 
     /**
      * Inserts a node into the red-black tree.
      * Checks for violations in the red property after insertion.
+     * Inserting a value that is already in the tree does nothing.
      * @param data The data to insert into the tree.
      */
     public void insert(int data){
-        RbtNode cur = null;
-        RbtNode prev = null;
-
-        // Insert the node as normal
-        // First check if the root is null
-        if(root == null){
-            root = new RbtNode(data);
-            root.setColor(RbtNode.CL_BLACK);
-            size++;
-            return;
-        } else {
-
-            // Travel down the tree 
-            cur = root;
-            while(cur!=null){
-                
-                // If the data is smaller than the current data, go left
-                if(data < cur.getData()){
-                    prev = cur;
-                    cur = cur.getLeft();
-                } 
-                // If the data is greater than the current data, go right
-                else if(data > cur.getData()){
-                    prev = cur;
-                    cur = cur.getRight();
-                }
-            }
-            // Create the new node at the correct leaf
-            if(data < prev.getData()){
-                // Insert the node to the left
-                prev.setLeft(new RbtNode(data));
-                size++;
-
-                // Set the current node to the new node
-                cur = prev.getLeft();
-                cur.setParent(prev);
-            }
-            if(data > prev.getData()){
-                // Insert the node to the right
-                prev.setRight(new RbtNode(data));
-                size++;
-
-                // Set the current node to the new node
-                cur = prev.getRight();
-                cur.setParent(prev);
-
-            }
-        }
-
-        // Check the branch for violations in the red property from the newly inserted node
-        if(cur.getParent().getColor() != RbtNode.CL_BLACK && cur != root){
-            checkRedViolation(cur);
-        }
-
-        // Check for a violaition in the root property
-        if(root.getColor() == RbtNode.CL_RED){
-            root.setColor(RbtNode.CL_BLACK);
-        }   
+        insertNode(data);
     }
 
     /**
-     * Deletes a node from the red-black tree using standard delete methods.
-     * Checks for violations in the black property after deletion.
-     * @param data The data to delete from the tree.
+     * Inserts the data if it is not in the tree yet.
+     * @param data The data to insert into the tree.
+     * @return The node holding the data, new or already in the tree.
      */
-    public void delete(int data){
-        // If the root is null, return
-        if(root == null){
-            return;
+    protected RbtNode insertNode(int data){
+        // Keys have been coming in ascending order, so try to hang the new one off the max node
+        if(appendMode){
+            if(data > rightmost.getData()){
+                appendHits++;
+                RbtNode node = createNode(data);
+                link(rightmost, node, false);
+                rightmost = node;
+                return node;
+            }
+
+            // The run is broken, go back to searching from the root
+            appendMisses++;
+            appendMode = false;
+            ascendingRun = 0;
         }
 
-        // Start at the root
         RbtNode cur = root;
+        RbtNode prev = null;
+        boolean onRightSpine = true;
 
-        // Travel down the tree until the node is found
+        // Travel down the tree 
         while(cur != null){
-            // If the data at the current node is the data to delete, break
-            if(data == cur.getData()){
-                break;
-            }
-            // If the left side of the node is less than the data, go left
+            prev = cur;
+
+            // If the data is smaller than the current data, go left
             if(data < cur.getData()){
                 cur = cur.getLeft();
+                onRightSpine = false;
+            } 
+            // If the data is greater than the current data, go right
+            else if(data > cur.getData()){
+                cur = cur.getRight();
             }
-            if(data > cur.getData()){
-                cur=cur.getRight();
-            }
-
-        }
-
-        // If the node is not found, return
-        if(cur == null){
-            return;
-        }
-        // Save the node to be deleted
-        RbtNode deleted = cur;
-
-
-        // If the node is a leaf
-        if(cur.getLeft() == null && cur.getRight() == null){
-            // If the node is the root
-            if(cur == root){
-                root = null;
-            }
-            // If the node is the left child
-            else if(cur.getParent().getLeft() == cur){
-                cur.getParent().setLeft(null);
-            }
-            // If the node is the right child
-            else if(cur.getParent().getRight() == cur){
-                cur.getParent().setRight(null);
-            }
-
-            size--;
-        }
-
-        // If the node has one child
-        else if(cur.getLeft() == null ^ cur.getRight() == null){
-            // If the current node is the root
-            if(cur == root){
-                // If the child is to the left
-                if(cur.getLeft() != null){
-                    cur.getLeft().setParent(null);
-                    root = cur.getLeft();
-                }
-                else if(cur.getRight() != null){
-                    cur.getRight().setParent(null);
-                    root = cur.getRight();
-                }
-            }
-            // If the current node has a left child
-            else if(cur.getLeft() != null){
-                // Set the current nodes child to the current nodes color
-                cur.getLeft().setColor(cur.getColor());
-
-                // If the current node is to the left of its parent
-                if(cur.getParent().getLeft() == cur){
-                    // Set the parent's left to the current nodes child
-                    cur.getParent().setLeft(cur.getLeft());
-                    cur.getLeft().setParent(cur.getParent());
-                }
-                // If the current node is to the right of its parent
-                else if(cur.getParent().getRight() == cur){
-                    // Set the parents left to the current nodes child
-                    cur.getParent().setRight(cur.getLeft());
-                    cur.getLeft().setParent(cur.getParent());
-                }
-            }
-            // If the current node has a right child
-            else if(cur.getRight() != null){
-                // Set the current nodes child to the current nodes color
-                cur.getRight().setColor(cur.getColor());
-
-                // If the current node is to the left of its parent
-                if(cur.getParent().getLeft() == cur){
-                    // Set the parent's left to the current nodes child
-                    cur.getParent().setLeft(cur.getRight());
-                    cur.getRight().setParent(cur.getParent());
-                }
-                // If the current node is to the right of its parent
-                else if(cur.getParent().getRight() == cur){
-                    // Set the parents left to the current nodes child
-                    cur.getParent().setRight(cur.getRight());
-                    cur.getRight().setParent(cur.getParent());
-                }
+            // The data is already in the tree
+            else{
+                ascendingRun = 0;
+                return cur;
             }
-            size--;
-        }
-        // If the current node has two children
-        else if(cur.getLeft() != null && cur.getRight() != null){
-            // Find the successor
-            RbtNode successor = successor(cur);
-            delete(successor.getData());
-            cur.setData(successor.getData());
-            cur.setColor(deleted.getColor());
-        }
-
-
-        // Check for violations in the black property
-        if(deleted.getColor() == RbtNode.CL_BLACK){
-            checkBlackViolation(deleted);
         }
 
-    }
+        // Create the new node at the correct leaf
+        RbtNode node = createNode(data);
+        link(prev, node, prev != null && data < prev.getData());
 
-    /**
-     * Finds the successor of the given node.
-     * The successor is the left most node of the right child.
-     * If the node has no right child, return null.
-     * @param node The node to find the successor of.
-     * @return The successor of the given node.
-     */
-    private RbtNode successor(RbtNode node){
-        // If the node is null, return null
-        if(node == null){
-            return null;
-        }
-        // If the node has a right child, return the left most node of the right child
-        if(node.getRight() != null){
-            // Start to the right of the current node
-            RbtNode successor = node.getRight();
-            // Then keep going left until the left node is null
-            while(successor.getLeft() != null){
-                successor = successor.getLeft();
+        // Switch to append mode after enough inserts in a row became the new max
+        if(onRightSpine){
+            rightmost = node;
+            if(++ascendingRun >= APPEND_RUN){
+                appendMode = true;
             }
-            return successor;
         } else{
-            return null;
+            ascendingRun = 0;
         }
+        return node;
     }
 
-
-
-
     /**
-     * Checks the branch for violations in the red property
-     * @param cur The current node to check for violations. Starts at the new node.
+     * Unlinks a node, leaving append mode if it is the max node.
+     * @param node The node to remove.
      */
-    private void checkRedViolation(RbtNode cur){
-        // If the new node is null, it is out of the bounds of the tree
-        if(cur==null ^ cur==root){
-            return;
-        }        
-
-        // If there is a violation in the red property
-        if(cur.getColor() == RbtNode.CL_RED && cur.getParentColor() == RbtNode.CL_RED){
-            // Case 1: Red Uncle
-            if(cur.getUncleColor() == RbtNode.CL_RED){
-                changeUncle(cur);
-            }
-
-            // Case 2: Left Left case
-            // The current node is red and the parent of the current node is red
-            else if(cur.getParent().getLeft() == cur && cur.getGParent().getLeft() == cur.getParent() ){
-
-                RbtNode p = cur.getParent();
-                RbtNode g = p.getParent();
-                RbtNode gg = g.getParent();
-
-                // Set the grandparents left or right to the current node
-                if(gg != null){
-                    if(gg.getLeft() == g){
-                        gg.setLeft(p);
-                    } else{
-                        gg.setRight(p);
-                    }
-                }
-
-                // Rotate the nodes to the right
-                rightRotate(p);
-
-                // Set the current nodes parent to the Great grandparent
-                p.setParent(gg);
-
-                // Check if p is the new root node
-                if(p.getParent() == null)
-                    root = p;
-
-                // Change the colors of p and g
-                p.setColor(RbtNode.CL_BLACK);
-                g.setColor(RbtNode.CL_RED);
-
-            }
-
-            // Case 3: Left Right case
-            // The current node is red and the parent is red. The current node is to the right of its parent, which is to the left of its parent.
-            else if(cur.getParent().getRight() == cur && cur.getGParent().getLeft() == cur.getParent()){
-                RbtNode p = cur.getParent();
-                RbtNode g = p.getParent();
-
-                // Rotate to the left
-                leftRotate(cur);
-
-                cur.setParent(g);
-                g.setLeft(cur);
-
-                //Recusively call the method to check the rest of the tree
-                checkRedViolation(cur.getLeft());
-            }
-            
-            
-            // Case 4: Right Right case
-            // The current node is red and the parent is red. The current node is to the right of it's parent, which is to the right of its parent
-            else if(cur.getParent().getRight() == cur && cur.getGParent().getRight() == cur.getParent()){
-
-                // Assign pointers
-                RbtNode p = cur.getParent();
-                RbtNode g = p.getParent();
-                RbtNode gg = g.getParent();
-
-                // Set the grandparents left or right to the current node
-                if(gg != null){
-                    if(gg.getLeft() == g){
-                        gg.setLeft(p);
-                    } else{
-                        gg.setRight(p);
-                    }
-                }
-
-                // Rotate the nodes to the left
-                leftRotate(p);
-
-                // Set the current nodes parent to the Great grandparent
-                p.setParent(gg);
-
-                // Check if p is the new root node
-                if(p.getParent() == null)
-                    root = p;
-
-                // Change the colors of p and g
-                p.setColor(RbtNode.CL_BLACK);
-                g.setColor(RbtNode.CL_RED);
-            }
-            
-            // Case 5: Right Left case
-            // The current node is red and the parent is red. The current node is to the left of it's parent, which is to the right of its parent
-            else if(cur.getParent().getLeft() == cur && cur.getGParent().getRight() == cur.getParent()){
-                RbtNode p = cur.getParent();
-                RbtNode g = p.getParent();
-
-                // Rotate to the right
-                rightRotate(cur);
-
-                cur.setParent(g);
-                g.setRight(cur);
-
-                //Recusively call the method to check the rest of the tree
-                checkRedViolation(cur.getRight());
-            }
+    @Override
+    protected void unlink(RbtNode node){
+        if(node == rightmost){
+            rightmost = null;
+            appendMode = false;
+            ascendingRun = 0;
         }
-        
-        // Get the gp to test the rest of the tree
-        checkRedViolation(cur.getGParent());
-
-        return;
+        super.unlink(node);
     }
 
     /**
-     * Checks the branch for violations in the depth property
-     * by checking the replacement for the deleted node.
-     * @param cur The replacement for the deleted node.
+     * Returns the number of inserts that went straight to the max node.
+     * @return The number of fast path appends.
      */
-    private void checkBlackViolation(RbtNode cur){
-        // If the new node is null, it is out of the bounds of the tree
-        if(cur==null ^ cur.getColor() == RbtNode.CL_BLACK){
-            return;
-        }
-
-        // Get the sibiling and parent of the current node
-        RbtNode sibiling = cur.getSibiling();
-        RbtNode parent = cur.getParent();
-        
-        // If the current node is the left child of its parent
-        if(cur.getParent().getLeft() == cur){
-            // Case 1: If the sibiling is red
-            if(sibiling.getColor() == RbtNode.CL_RED){
-                // Set the color of the sibling to black
-                sibiling.setColor(RbtNode.CL_BLACK);
-
-                // Set the color of the parent to red
-                parent.setColor(RbtNode.CL_RED);
-
-                // Left rotate on the parent node
-                leftRotate(parent);
-
-                // Update the sibiling to the new sibiling
-                sibiling = cur.getSibiling();
-            }
-
-            // Case 2: If bith the children on the sibiling are black
-            if(sibiling.getLeft().getColor() == RbtNode.CL_BLACK && sibiling.getRight().getColor() == RbtNode.CL_BLACK){
-                // Set the color of the sibiling to red
-                sibiling.setColor(RbtNode.CL_RED);
-
-                // Make the current node the parent of the current node
-                cur = cur.getParent();
-            // Case 3: Else if the color of the right child of the sibiling is black
-            } else{
-                if(sibiling.getRight().getColor() == RbtNode.CL_BLACK){
-                    // Set the color of the left child of the sibiling to black
-                    sibiling.getLeft().setColor(RbtNode.CL_BLACK);
-
-                    // Set the color of the sibiling to red
-                    sibiling.setColor(RbtNode.CL_RED); 
-
-                    // Right rotate on the sibiling
-                    rightRotate(sibiling);
-
-                    // Update the sibiling to the new sibiling
-                    sibiling = cur.getSibiling();
-                }
-
-                // Case 4
-                // Set the color of the sibiling to the color of the parent
-                sibiling.setColor(parent.getColor());
-
-                // Set the color of the grand parent to black
-                cur.setGParentColor(RbtNode.CL_BLACK);
-
-                // Set the color of the right child of the sibiling to black
-                sibiling.getRight().setColor(RbtNode.CL_BLACK);
-
-                // Left rotate on the parent
-                leftRotate(parent);
-
-                // Make the current node the root
-                cur = root;
-            } 
-        } else {
-
-            // Case 1: If the sibiling is red
-            if(sibiling.getColor() == RbtNode.CL_RED){
-                // Set the color of the sibling to black
-                sibiling.setColor(RbtNode.CL_BLACK);
-
-                // Set the color of the parent to red
-                parent.setColor(RbtNode.CL_RED);
-
-                // Left rotate on the parent node
-                rightRotate(parent);
-
-                // Update the sibiling to the new sibiling
-                sibiling = cur.getSibiling();
-            }
-
-            // Case 2: If bith the children on the sibiling are black
-            if(sibiling.getRight().getColor() == RbtNode.CL_BLACK && sibiling.getLeft().getColor() == RbtNode.CL_BLACK){
-                // Set the color of the sibiling to red
-                sibiling.setColor(RbtNode.CL_RED);
-
-                // Make the current node the parent of the current node
-                cur = cur.getParent();
-
-            // Case 3: Else if the color of the right child of the sibiling is black
-            } else{
-                if(sibiling.getLeft().getColor() == RbtNode.CL_BLACK){
-                    // Set the color of the left child of the sibiling to black
-                    sibiling.getRight().setColor(RbtNode.CL_BLACK);
-
-                    // Set the color of the sibiling to red
-                    sibiling.setColor(RbtNode.CL_RED); 
-
-                    // Right rotate on the sibiling
-                    leftRotate(sibiling);
-
-                    // Update the sibiling to the new sibiling
-                    sibiling = cur.getSibiling();
-                }
-
-                // Case 4
-                // Set the color of the sibiling to the color of the parent
-                sibiling.setColor(parent.getColor());
-
-                // Set the color of the grand parent to black
-                cur.setGParentColor(RbtNode.CL_BLACK);
-
-                // Set the color of the right child of the sibiling to black
-                sibiling.getLeft().setColor(RbtNode.CL_BLACK);
-
-                // Left rotate on the parent
-                rightRotate(parent);
-
-                // Make the current node the root
-                cur = root;
-            }
-        }
-        cur.setColor(RbtNode.CL_BLACK);
-        checkBlackViolation(cur);
+    public long appendHits(){
+        return this.appendHits;
     }
 
-
-
-
     /**
-     * Changes the colors of the parent, uncle, and grandparent.
-     * @param cur The current node to change the colors of.
+     * Returns the number of times append mode was left because a key was not the new max.
+     * @return The number of fast path misses.
      */
-    private void changeUncle(RbtNode cur){
-
-        // Change the colors of the parent, uncle, and grandparent
-        cur.setParentColor(RbtNode.CL_BLACK);
-
-        cur.setUncleColor(RbtNode.CL_BLACK);
-
-        cur.setGParentColor(RbtNode.CL_RED);
+    public long appendMisses(){
+        return this.appendMisses;
     }
 
-
-    
-
     /**
-     * Rotates a subtree to the right.
-     * It rotates around node p which is the parent of the current node that is being checked for violations.
-     * This method will also change the colors of the nodes.
-     * @param p The parent of the current node that is being checked for violations.
+     * Creates the node for newly inserted data.
+     * @param data The data for the node.
+     * @return A new node.
      */
-    private void rightRotate(RbtNode p){
-        // Get the nodes to rotate
-
-        RbtNode x = p.getLeft();
-
-        RbtNode t = p.getRight();
-
-        RbtNode g = p.getParent();
-
-        // Rotate the nodes
-
-        // Set the old parents left to the current nodes right
-        g.setLeft(t);
-
-        // Set the currents right to the old parent
-        p.setRight(g);
-
-        // Set the old grandparent's parent to the current node
-        g.setParent(p);
-
-
+    protected RbtNode createNode(int data){
+        if(pool != null){
+            return pool.acquire(data);
+        }
+        return new RbtNode(data);
     }
+
     /**
-     * Rotates a subtree to the left.
-     * It rotates around node p which is the parent of the current node that is being checked for violations.
-     * This method will also change the colors of the nodes.
-     * @param p The parent of the current node that is being checked for violations.
+     * Deletes a node from the red-black tree using standard delete methods.
+     * Checks for violations in the black property after deletion.
+     * @param data The data to delete from the tree.
      */
-    private void leftRotate(RbtNode p){
-
-        RbtNode x = p.getRight();
-
-        RbtNode t = p.getLeft();
-
-        RbtNode g = p.getParent();
-
-        // Set the grandparents left or right to the current node
-        g.setRight(t);
+    public void delete(int data){
+        // Start at the root
+        RbtNode cur = root;
 
-        
-        // Set the current nodes left to the old parent
-        p.setLeft(g);
+        // Travel down the tree until the node is found
+        while(cur != null){
+            // If the data at the current node is the data to delete, break
+            if(data == cur.getData()){
+                break;
+            }
+            // If the data is less than the current data, go left
+            if(data < cur.getData()){
+                cur = cur.getLeft();
+            } else{
+                cur = cur.getRight();
+            }
+        }
 
+        // If the node is not found, return
+        if(cur == null){
+            return;
+        }
 
-        // Set the current nodes parent to the grandparent
-        g.setParent(p);
-        
+        unlink(cur);
 
+        // The node is out of the tree, so it can be used for the next insert
+        if(pool != null){
+            pool.release(cur);
+        }
     }
 
 
@@ -584,9 +206,6 @@ class Rbt {
      * @return true if the data is found, false otherwise
      */
     public boolean search(int data){
-        if(root == null){
-            return false;
-        }
         RbtNode cur = root;
         while(cur != null){
             // If the data is found, return true
@@ -594,11 +213,10 @@ class Rbt {
                 return true;
             
             // If the data is less than the current data, go left
-
             } else if(data < cur.getData()){ 
                 cur = cur.getLeft();
             // If the data is more than the current data, go right
-            } else if(data > cur.getData()){
+            } else{
                 cur = cur.getRight();
             }
         }
@@ -615,16 +233,8 @@ class Rbt {
         if(root == null){
             return -1;
         }
-        // Start at the root
-        RbtNode cur = root;
         // Travel down the left side of the tree until the left node is null
-        while(cur != null){
-            if(cur.getLeft() == null){
-                break;
-            }
-            cur = cur.getLeft();
-        }
-        return cur.getData();
+        return minNode(root).getData();
     }
 
     /**
@@ -636,24 +246,61 @@ class Rbt {
         if(root == null){
             return -1;
         }
-        // Start at the root
-        RbtNode cur = root;
         // Travel down the right side of the tree until the right node is null
-        while(cur != null){
-            if(cur.getRight() == null){
-                break;
-            }
-            cur = cur.getRight();
+        return maxNode(root).getData();
+    }
+
+    /**
+     * Passes the values between lo and hi to the action in order.
+     * @param lo The smallest value to include.
+     * @param hi The largest value to include.
+     * @param limit The most values to pass to the action.
+     * @param action The action to run on each value.
+     * @return The number of values passed to the action.
+     */
+    public int range(int lo, int hi, int limit, IntConsumer action){
+        int count = 0;
+        RbtNode cur = ceilingNode(lo);
+
+        // Walk forward from the first value in the range until we pass hi
+        while(cur != null && cur.getData() <= hi && count < limit){
+            action.accept(cur.getData());
+            count++;
+            cur = nextNode(cur);
         }
-        return cur.getData();
+        return count;
     }
 
     /**
-     * Returns the number of nodes in the tree.
-     * @return The number of nodes in the tree.
+     * Returns a cursor over the values in the tree in order.
+     * The tree must not change while the cursor is in use.
+     * @return A cursor at the smallest value.
      */
-    public int size(){
-        return this.size;
+    public RbtCursor cursor(){
+        return new RbtCursor(minNode(root));
+    }
+
+    /**
+     * Finds the node with the smallest value that is at least the given data.
+     * @param data The data to look for.
+     * @return The node, or null if every value is smaller.
+     */
+    private RbtNode ceilingNode(int data){
+        RbtNode cur = root;
+        RbtNode best = null;
+        while(cur != null){
+            if(cur.getData() == data){
+                return cur;
+            }
+            // Remember the node and go left to find a closer one
+            if(data < cur.getData()){
+                best = cur;
+                cur = cur.getLeft();
+            } else{
+                cur = cur.getRight();
+            }
+        }
+        return best;
     }
 
     /**
@@ -690,6 +337,39 @@ class Rbt {
 
 
 
+/**
+ * Walks the values of an Rbt in order without boxing them or keeping a stack.
+ */
+class RbtCursor{
+
+    // The node holding the next value, or null at the end
+    private RbtNode next;
+
+    public RbtCursor(RbtNode first){
+        this.next = first;
+    }
+
+    public boolean hasNext(){
+        return this.next != null;
+    }
+
+    /**
+     * Returns the next value and moves past it.
+     * @return The next value.
+     */
+    public int next(){
+        if(next == null){
+            throw new NoSuchElementException();
+        }
+        int data = next.getData();
+        next = RbtBase.nextNode(next);
+        return data;
+    }
+}
+
+
+
+
 class RbtNode{
 
     // Possible colors for the node
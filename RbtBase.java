@@ -0,0 +1,493 @@
+/**
+ * Description: The balancing core shared by the red-black trees.
+ * Holds the root, the size, and the rotation and fix-up logic. None of it looks at the keys,
+ * so every tree type searches with its own key and then calls in here to link, unlink and rebalance.
+ */
+
+
+abstract class RbtBase {
+    // Root node (public for the vizualization)
+    public RbtNode root;
+
+    // Size of the tree
+    protected int size;
+
+    // Told about every node linked or unlinked, may be null
+    private RbtListener listener;
+
+    /**
+     * Returns the number of nodes in the tree.
+     * @return The number of nodes in the tree.
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Returns true if the tree has no nodes.
+     * @return True if the tree is empty.
+     */
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    /**
+     * Sets the listener told about every node linked into or unlinked from the tree.
+     * @param listener The listener, or null to remove it.
+     */
+    public void setListener(RbtListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Links a new red node under the given parent and rebalances the tree.
+     * Checks for violations in the red property after linking.
+     * @param parent The leaf to attach the node to, or null if the tree is empty.
+     * @param node The new node.
+     * @param left True if the node goes to the left of the parent.
+     */
+    protected void link(RbtNode parent, RbtNode node, boolean left){
+        node.setColor(RbtNode.CL_RED);
+        node.setParent(parent);
+
+        if(parent == null){
+            root = node;
+        } else if(left){
+            parent.setLeft(node);
+        } else{
+            parent.setRight(node);
+        }
+        size++;
+
+        // Check the branch for violations in the red property from the newly inserted node
+        checkRedViolation(node);
+
+        // Check for a violaition in the root property
+        root.setColor(RbtNode.CL_BLACK);
+
+        if(listener != null){
+            listener.changed(node, true);
+        }
+    }
+
+    /**
+     * Unlinks a node from the tree using standard delete methods.
+     * A node with two children is replaced by its successor node, so the given node
+     * is always the one that leaves the tree. Its links are cleared before returning.
+     * Checks for violations in the black property after unlinking.
+     * @param node The node to remove.
+     */
+    protected void unlink(RbtNode node){
+        // The node that moves into the removed spot, and its parent (the node may be null)
+        RbtNode cur;
+        RbtNode parent;
+        byte removedColor = node.getColor();
+
+        // If the node has at most a right child, the right child replaces it
+        if(node.getLeft() == null){
+            cur = node.getRight();
+            parent = node.getParent();
+            replaceChild(node.getParent(), node, cur);
+        }
+        // If the node has only a left child, the left child replaces it
+        else if(node.getRight() == null){
+            cur = node.getLeft();
+            parent = node.getParent();
+            replaceChild(node.getParent(), node, cur);
+        }
+        // If the node has two children, the successor replaces it
+        else{
+            RbtNode successor = successor(node);
+            removedColor = successor.getColor();
+            cur = successor.getRight();
+
+            if(successor.getParent() == node){
+                parent = successor;
+            } else{
+                // Pull the successor out of the right subtree first
+                parent = successor.getParent();
+                replaceChild(successor.getParent(), successor, cur);
+                successor.setRight(node.getRight());
+                successor.getRight().setParent(successor);
+            }
+
+            // Put the successor where the node was, with the node's color
+            replaceChild(node.getParent(), node, successor);
+            successor.setLeft(node.getLeft());
+            successor.getLeft().setParent(successor);
+            successor.setColor(node.getColor());
+        }
+        size--;
+
+        node.setLeft(null);
+        node.setRight(null);
+        node.setParent(null);
+
+        // The subtrees under the old spot lost a node
+        updateAugmentPath(parent);
+
+        // Removing a black node shortens its branch
+        if(removedColor == RbtNode.CL_BLACK){
+            checkBlackViolation(cur, parent);
+        }
+
+        if(listener != null){
+            listener.changed(node, false);
+        }
+    }
+
+    /**
+     * Finds the successor of the given node.
+     * The successor is the left most node of the right child.
+     * If the node has no right child, return null.
+     * @param node The node to find the successor of.
+     * @return The successor of the given node.
+     */
+    protected RbtNode successor(RbtNode node){
+        // If the node is null, return null
+        if(node == null){
+            return null;
+        }
+        // If the node has a right child, return the left most node of the right child
+        if(node.getRight() != null){
+            return minNode(node.getRight());
+        } else{
+            return null;
+        }
+    }
+
+    /**
+     * Finds the next node in order, walking up through the parents when there is no right child.
+     * @param node The node to start from.
+     * @return The next node in order, or null if the node is the largest.
+     */
+    protected static RbtNode nextNode(RbtNode node){
+        if(node.getRight() != null){
+            return minNode(node.getRight());
+        }
+        // Go up until we come from a left child
+        RbtNode parent = node.getParent();
+        while(parent != null && parent.getRight() == node){
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * Finds the left most node of a subtree.
+     * @param node The root of the subtree, may be null.
+     * @return The smallest node of the subtree, or null if it is empty.
+     */
+    protected static RbtNode minNode(RbtNode node){
+        if(node == null){
+            return null;
+        }
+        while(node.getLeft() != null){
+            node = node.getLeft();
+        }
+        return node;
+    }
+
+    /**
+     * Finds the right most node of a subtree.
+     * @param node The root of the subtree, may be null.
+     * @return The largest node of the subtree, or null if it is empty.
+     */
+    protected static RbtNode maxNode(RbtNode node){
+        if(node == null){
+            return null;
+        }
+        while(node.getRight() != null){
+            node = node.getRight();
+        }
+        return node;
+    }
+
+
+
+
+    /**
+     * Checks the branch for violations in the red property
+     * @param cur The current node to check for violations. Starts at the new node.
+     */
+    protected void checkRedViolation(RbtNode cur){
+        // Keep going while the current node and its parent are both red.
+        // A red parent is never the root, so the grandparent always exists.
+        while(cur != root && cur.getColor() == RbtNode.CL_RED && cur.getParentColor() == RbtNode.CL_RED){
+            RbtNode p = cur.getParent();
+            RbtNode g = p.getParent();
+
+            // Case 1: Red Uncle
+            if(cur.getUncleColor() == RbtNode.CL_RED){
+                changeUncle(cur);
+
+                // The grandparent is now red, so check it next
+                cur = g;
+            }
+
+            // The parent is to the left of the grandparent
+            else if(g.getLeft() == p){
+                // Case 3: Left Right case
+                // Rotate the parent to the left so it becomes the Left Left case
+                if(p.getRight() == cur){
+                    leftRotate(p);
+                    cur = p;
+                    p = cur.getParent();
+                }
+
+                // Case 2: Left Left case
+                // Rotate the grandparent to the right and change the colors of p and g
+                rightRotate(g);
+                p.setColor(RbtNode.CL_BLACK);
+                g.setColor(RbtNode.CL_RED);
+            }
+
+            // The parent is to the right of the grandparent
+            else{
+                // Case 5: Right Left case
+                // Rotate the parent to the right so it becomes the Right Right case
+                if(p.getLeft() == cur){
+                    rightRotate(p);
+                    cur = p;
+                    p = cur.getParent();
+                }
+
+                // Case 4: Right Right case
+                // Rotate the grandparent to the left and change the colors of p and g
+                leftRotate(g);
+                p.setColor(RbtNode.CL_BLACK);
+                g.setColor(RbtNode.CL_RED);
+            }
+        }
+    }
+
+    /**
+     * Checks the branch for violations in the depth property
+     * by checking the replacement for the deleted node.
+     * @param cur The replacement for the deleted node, may be null.
+     * @param parent The parent of the replacement.
+     */
+    protected void checkBlackViolation(RbtNode cur, RbtNode parent){
+        // A red replacement can just be painted black, otherwise push the missing black up
+        while(cur != root && colorOf(cur) == RbtNode.CL_BLACK){
+
+            // If the current node is the left child of its parent
+            if(parent.getLeft() == cur){
+                RbtNode sibiling = parent.getRight();
+
+                // Case 1: If the sibiling is red
+                if(colorOf(sibiling) == RbtNode.CL_RED){
+                    sibiling.setColor(RbtNode.CL_BLACK);
+                    parent.setColor(RbtNode.CL_RED);
+                    leftRotate(parent);
+
+                    // Update the sibiling to the new sibiling
+                    sibiling = parent.getRight();
+                }
+
+                // Case 2: If both the children of the sibiling are black
+                if(colorOf(sibiling.getLeft()) == RbtNode.CL_BLACK && colorOf(sibiling.getRight()) == RbtNode.CL_BLACK){
+                    sibiling.setColor(RbtNode.CL_RED);
+
+                    // Move up to the parent
+                    cur = parent;
+                    parent = cur.getParent();
+                } else{
+                    // Case 3: If the right child of the sibiling is black
+                    if(colorOf(sibiling.getRight()) == RbtNode.CL_BLACK){
+                        sibiling.getLeft().setColor(RbtNode.CL_BLACK);
+                        sibiling.setColor(RbtNode.CL_RED);
+                        rightRotate(sibiling);
+
+                        // Update the sibiling to the new sibiling
+                        sibiling = parent.getRight();
+                    }
+
+                    // Case 4: The right child of the sibiling is red
+                    sibiling.setColor(parent.getColor());
+                    parent.setColor(RbtNode.CL_BLACK);
+                    sibiling.getRight().setColor(RbtNode.CL_BLACK);
+                    leftRotate(parent);
+
+                    // The tree is balanced, finish at the root
+                    cur = root;
+                    parent = null;
+                }
+            } else{
+                RbtNode sibiling = parent.getLeft();
+
+                // Case 1: If the sibiling is red
+                if(colorOf(sibiling) == RbtNode.CL_RED){
+                    sibiling.setColor(RbtNode.CL_BLACK);
+                    parent.setColor(RbtNode.CL_RED);
+                    rightRotate(parent);
+
+                    // Update the sibiling to the new sibiling
+                    sibiling = parent.getLeft();
+                }
+
+                // Case 2: If both the children of the sibiling are black
+                if(colorOf(sibiling.getRight()) == RbtNode.CL_BLACK && colorOf(sibiling.getLeft()) == RbtNode.CL_BLACK){
+                    sibiling.setColor(RbtNode.CL_RED);
+
+                    // Move up to the parent
+                    cur = parent;
+                    parent = cur.getParent();
+                } else{
+                    // Case 3: If the left child of the sibiling is black
+                    if(colorOf(sibiling.getLeft()) == RbtNode.CL_BLACK){
+                        sibiling.getRight().setColor(RbtNode.CL_BLACK);
+                        sibiling.setColor(RbtNode.CL_RED);
+                        leftRotate(sibiling);
+
+                        // Update the sibiling to the new sibiling
+                        sibiling = parent.getLeft();
+                    }
+
+                    // Case 4: The left child of the sibiling is red
+                    sibiling.setColor(parent.getColor());
+                    parent.setColor(RbtNode.CL_BLACK);
+                    sibiling.getLeft().setColor(RbtNode.CL_BLACK);
+                    rightRotate(parent);
+
+                    // The tree is balanced, finish at the root
+                    cur = root;
+                    parent = null;
+                }
+            }
+        }
+        if(cur != null){
+            cur.setColor(RbtNode.CL_BLACK);
+        }
+    }
+
+    /**
+     * Recomputes any summary a tree keeps in its nodes from the node and its children.
+     * Called on both nodes of every rotation. Does nothing for trees that keep no summary.
+     * @param node The node to update.
+     */
+    protected void updateAugment(RbtNode node){
+    }
+
+    /**
+     * Recomputes any summary a tree keeps in its nodes from the node up to the root.
+     * Called after a node is unlinked. Does nothing for trees that keep no summary.
+     * @param node The lowest node whose subtree changed, may be null.
+     */
+    protected void updateAugmentPath(RbtNode node){
+    }
+
+    /**
+     * Returns the color of a node, treating null leaves as black.
+     * @param node The node to check.
+     * @return The color of the node.
+     */
+    protected static byte colorOf(RbtNode node){
+        if(node == null){
+            return RbtNode.CL_BLACK;
+        }
+        return node.getColor();
+    }
+
+
+
+
+    /**
+     * Changes the colors of the parent, uncle, and grandparent.
+     * @param cur The current node to change the colors of.
+     */
+    private void changeUncle(RbtNode cur){
+
+        // Change the colors of the parent, uncle, and grandparent
+        cur.setParentColor(RbtNode.CL_BLACK);
+
+        cur.setUncleColor(RbtNode.CL_BLACK);
+
+        cur.setGParentColor(RbtNode.CL_RED);
+    }
+
+
+
+
+    /**
+     * Rotates a subtree to the right.
+     * The left child of g takes its place and g becomes its right child.
+     * @param g The top node of the subtree to rotate.
+     */
+    protected void rightRotate(RbtNode g){
+        RbtNode p = g.getLeft();
+
+        // Set g's left to p's right
+        g.setLeft(p.getRight());
+        if(p.getRight() != null){
+            p.getRight().setParent(g);
+        }
+
+        // Put p where g was
+        replaceChild(g.getParent(), g, p);
+
+        // Set p's right to g
+        p.setRight(g);
+        g.setParent(p);
+
+        // g is now below p, so update it first
+        updateAugment(g);
+        updateAugment(p);
+    }
+
+    /**
+     * Rotates a subtree to the left.
+     * The right child of g takes its place and g becomes its left child.
+     * @param g The top node of the subtree to rotate.
+     */
+    protected void leftRotate(RbtNode g){
+        RbtNode p = g.getRight();
+
+        // Set g's right to p's left
+        g.setRight(p.getLeft());
+        if(p.getLeft() != null){
+            p.getLeft().setParent(g);
+        }
+
+        // Put p where g was
+        replaceChild(g.getParent(), g, p);
+
+        // Set p's left to g
+        p.setLeft(g);
+        g.setParent(p);
+
+        // g is now below p, so update it first
+        updateAugment(g);
+        updateAugment(p);
+    }
+
+    /**
+     * Replaces a child of the given parent, or the root if there is no parent.
+     * @param parent The parent of the old node.
+     * @param oldNode The node being replaced.
+     * @param newNode The node taking its place, may be null.
+     */
+    private void replaceChild(RbtNode parent, RbtNode oldNode, RbtNode newNode){
+        if(parent == null){
+            root = newNode;
+        } else if(parent.getLeft() == oldNode){
+            parent.setLeft(newNode);
+        } else{
+            parent.setRight(newNode);
+        }
+        if(newNode != null){
+            newNode.setParent(parent);
+        }
+    }
+}
+
+
+
+
+/**
+ * Receives the nodes linked into and unlinked from a tree, after it is balanced again.
+ */
+interface RbtListener{
+    void changed(RbtNode node, boolean linked);
+}
@@ -0,0 +1,363 @@
+/**
+ * Description: A randomized checker for the red-black trees.
+ * Runs random inserts, deletes and searches on each tree type and on a TreeSet
+ * side by side. After every write it checks the red-black rules and the links,
+ * and compares the keys with the TreeSet:
+ *   every child points back to its parent, and the root has no parent
+ *   the root is black and no red node has a red child
+ *   every path to a leaf has the same number of black nodes
+ *   the size matches the number of nodes, and the keys match the TreeSet in order
+ * IntervalRbt also has its max hi checked on every node, and its overlap queries
+ * compared with a scan of the TreeSet.
+ * Throws IllegalStateException at the first broken rule. Every check walks the
+ * whole tree, so the trees are kept to a couple of thousand keys.
+ *
+ * Usage: RbtCheck [ops] [seed]
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+
+class RbtCheck {
+    // Keys are drawn from this many values, so inserts and deletes often hit
+    private static final int KEY_RANGE = 2000;
+
+    // How often the slower overlap query check runs
+    private static final int QUERY_EVERY = 500;
+
+    /**
+     * Checks an Rbt with random writes.
+     * @param name The name of the run.
+     * @param tree The empty tree.
+     * @param ops The number of operations.
+     * @param random The source of keys.
+     */
+    private static void checkRbt(String name, Rbt tree, int ops, SplittableRandom random){
+        TreeSet<Integer> model = new TreeSet<>();
+        for(int i = 0; i < ops; i++){
+            int key = random.nextInt(KEY_RANGE);
+            int op = random.nextInt(3);
+            if(op == 0){
+                tree.insert(key);
+                model.add(key);
+            } else if(op == 1){
+                tree.delete(key);
+                model.remove(key);
+            } else if(tree.search(key) != model.contains(key)){
+                fail(name, "search(" + key + ") disagrees with the TreeSet");
+            }
+            if(op != 2){
+                checkShape(name, tree);
+                checkIntKeys(name, tree, model);
+            }
+        }
+        System.out.println(name + " ok, size " + tree.size());
+    }
+
+    /**
+     * Checks the append path of an Rbt with mostly ascending inserts.
+     * @param name The name of the run.
+     * @param ops The number of operations.
+     * @param random The source of keys.
+     */
+    private static void checkAppend(String name, int ops, SplittableRandom random){
+        Rbt tree = new Rbt();
+        TreeSet<Integer> model = new TreeSet<>();
+        int next = 0;
+        for(int i = 0; i < ops; i++){
+            int op = random.nextInt(10);
+            if(op < 8){
+                // Ascending keys, with now and then a smaller one to leave append mode
+                int key = op == 0 ? random.nextInt(next + 1) : next++;
+                tree.insert(key);
+                model.add(key);
+
+                // Drop the smallest key so the tree stays about KEY_RANGE big
+                if(model.size() > KEY_RANGE){
+                    tree.delete(model.first());
+                    model.pollFirst();
+                }
+            } else{
+                int key = random.nextInt(next + 1);
+                tree.delete(key);
+                model.remove(key);
+            }
+            checkShape(name, tree);
+            checkIntKeys(name, tree, model);
+        }
+        if(tree.appendHits() == 0){
+            fail(name, "the append path was never taken");
+        }
+        System.out.println(name + " ok, size " + tree.size() + ", " + tree.appendHits() + " appends");
+    }
+
+    /**
+     * Checks a LongRbt with random writes over keys that do not fit in an int.
+     * @param name The name of the run.
+     * @param ops The number of operations.
+     * @param random The source of keys.
+     */
+    private static void checkLong(String name, int ops, SplittableRandom random){
+        LongRbt tree = new LongRbt();
+        TreeSet<Long> model = new TreeSet<>();
+        for(int i = 0; i < ops; i++){
+            long key = ((long) random.nextInt(KEY_RANGE) - KEY_RANGE / 2) << 40;
+            int op = random.nextInt(3);
+            if(op == 0){
+                tree.insert(key);
+                model.add(key);
+            } else if(op == 1){
+                tree.delete(key);
+                model.remove(key);
+            } else if(tree.search(key) != model.contains(key)){
+                fail(name, "search(" + key + ") disagrees with the TreeSet");
+            }
+            if(op != 2){
+                checkShape(name, tree);
+                Iterator<Long> expected = model.iterator();
+                for(RbtNode cur = RbtBase.minNode(tree.root); cur != null; cur = RbtBase.nextNode(cur)){
+                    if(!expected.hasNext() || ((LongRbtNode) cur).getKey() != expected.next()){
+                        fail(name, "the keys do not match the TreeSet");
+                    }
+                }
+                if(expected.hasNext()){
+                    fail(name, "the keys do not match the TreeSet");
+                }
+            }
+        }
+        System.out.println(name + " ok, size " + tree.size());
+    }
+
+    /**
+     * Checks an IntervalRbt with random writes, and its overlap queries now and then.
+     * @param name The name of the run.
+     * @param ops The number of operations.
+     * @param random The source of intervals.
+     */
+    private static void checkInterval(String name, int ops, SplittableRandom random){
+        IntervalRbt tree = new IntervalRbt();
+        TreeSet<long[]> model = new TreeSet<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        for(int i = 0; i < ops; i++){
+            long lo = random.nextInt(KEY_RANGE);
+            long hi = lo + random.nextInt(50);
+            int op = random.nextInt(3);
+            if(op == 0){
+                tree.insert(lo, hi);
+                model.add(new long[]{lo, hi});
+            } else if(op == 1){
+                tree.delete(lo, hi);
+                model.remove(new long[]{lo, hi});
+            } else if(tree.search(lo, hi) != model.contains(new long[]{lo, hi})){
+                fail(name, "search(" + lo + ", " + hi + ") disagrees with the TreeSet");
+            }
+            if(op != 2){
+                checkShape(name, tree);
+                checkMaxHi(name, (IntervalRbtNode) tree.root);
+                Iterator<long[]> expected = model.iterator();
+                for(RbtNode cur = RbtBase.minNode(tree.root); cur != null; cur = RbtBase.nextNode(cur)){
+                    IntervalRbtNode node = (IntervalRbtNode) cur;
+                    long[] interval = expected.hasNext() ? expected.next() : null;
+                    if(interval == null || node.getLo() != interval[0] || node.getHi() != interval[1]){
+                        fail(name, "the intervals do not match the TreeSet");
+                    }
+                }
+            }
+            if(i % QUERY_EVERY == 0){
+                checkOverlapping(name, tree, model, lo, hi);
+            }
+        }
+        System.out.println(name + " ok, size " + tree.size());
+    }
+
+    /**
+     * Compares an overlap query with a scan of every interval.
+     * @param name The name of the run.
+     * @param tree The tree.
+     * @param model The same intervals in a TreeSet.
+     * @param lo The start of the query.
+     * @param hi The end of the query.
+     */
+    private static void checkOverlapping(String name, IntervalRbt tree, TreeSet<long[]> model, long lo, long hi){
+        List<long[]> found = new ArrayList<>();
+        tree.overlapping(lo, hi, (a, b) -> found.add(new long[]{a, b}));
+        int index = 0;
+        for(long[] interval : model){
+            if(interval[0] <= hi && interval[1] >= lo){
+                if(index >= found.size() || found.get(index)[0] != interval[0] || found.get(index)[1] != interval[1]){
+                    fail(name, "overlapping(" + lo + ", " + hi + ") missed or reordered an interval");
+                }
+                index++;
+            }
+        }
+        if(index != found.size()){
+            fail(name, "overlapping(" + lo + ", " + hi + ") returned an interval that does not overlap");
+        }
+    }
+
+    /**
+     * Checks a BoundedRbt with a size limit against a TreeSet trimmed the same way.
+     * @param name The name of the run.
+     * @param ops The number of operations.
+     * @param random The source of keys.
+     */
+    private static void checkBounded(String name, int ops, SplittableRandom random){
+        int maxSize = 300;
+        BoundedRbt tree = new BoundedRbt(maxSize, BoundedRbt.NO_LIMIT);
+        TreeSet<Integer> model = new TreeSet<>();
+        for(int i = 0; i < ops; i++){
+            int key = random.nextInt(KEY_RANGE);
+            if(random.nextInt(3) == 0){
+                tree.delete(key);
+                model.remove(key);
+            } else{
+                tree.insert(key);
+                model.add(key);
+            }
+            // Every write evicts the smallest keys over the limit, a batch at a time
+            for(int count = 0; model.size() > maxSize && count < BoundedRbt.DEFAULT_EVICT_BATCH; count++){
+                model.pollFirst();
+            }
+            checkShape(name, tree);
+            checkIntKeys(name, tree, model);
+        }
+        System.out.println(name + " ok, size " + tree.size() + ", " + tree.evicted() + " evicted");
+    }
+
+    /**
+     * Checks a BoundedRbt whose keys expire. Expiry depends on the clock, so the
+     * keys are only checked to be ones that were inserted and not deleted.
+     * @param name The name of the run.
+     * @param ops The number of operations.
+     * @param random The source of keys.
+     */
+    private static void checkExpiring(String name, int ops, SplittableRandom random){
+        BoundedRbt tree = new BoundedRbt(BoundedRbt.NO_LIMIT, 1);
+        TreeSet<Integer> model = new TreeSet<>();
+        for(int i = 0; i < ops; i++){
+            int key = random.nextInt(KEY_RANGE);
+            if(random.nextInt(3) == 0){
+                tree.delete(key);
+                model.remove(key);
+            } else{
+                tree.insert(key);
+                model.add(key);
+            }
+            checkShape(name, tree);
+            for(RbtNode cur = RbtBase.minNode(tree.root); cur != null; cur = RbtBase.nextNode(cur)){
+                if(!model.contains(cur.getData())){
+                    fail(name, "the tree holds " + cur.getData() + ", which was deleted");
+                }
+            }
+        }
+        System.out.println(name + " ok, size " + tree.size() + ", " + tree.evicted() + " evicted");
+    }
+
+    /**
+     * Checks the links, colors and size of a tree.
+     * @param name The name of the run.
+     * @param tree The tree.
+     */
+    private static void checkShape(String name, RbtBase tree){
+        if(tree.root != null && (tree.root.getParent() != null || tree.root.getColor() != RbtNode.CL_BLACK)){
+            fail(name, "the root has a parent or is not black");
+        }
+        blackHeight(name, tree.root, null);
+        int count = 0;
+        for(RbtNode cur = RbtBase.minNode(tree.root); cur != null; cur = RbtBase.nextNode(cur)){
+            count++;
+        }
+        if(count != tree.size()){
+            fail(name, "size() is " + tree.size() + " but there are " + count + " nodes");
+        }
+    }
+
+    /**
+     * Checks the links and colors of a subtree and finds its black height.
+     * @param name The name of the run.
+     * @param node The root of the subtree.
+     * @param parent The node it should point back to.
+     * @return The number of black nodes on every path down, counting the null leaf.
+     */
+    private static int blackHeight(String name, RbtNode node, RbtNode parent){
+        if(node == null){
+            return 1;
+        }
+        if(node.getParent() != parent){
+            fail(name, "a child of " + (parent == null ? "the root" : "a node") + " does not point back to it");
+        }
+        boolean red = node.getColor() == RbtNode.CL_RED;
+        if(red && (isRed(node.getLeft()) || isRed(node.getRight()))){
+            fail(name, "a red node has a red child");
+        }
+        int left = blackHeight(name, node.getLeft(), node);
+        int right = blackHeight(name, node.getRight(), node);
+        if(left != right){
+            fail(name, "black heights differ, " + left + " on the left and " + right + " on the right");
+        }
+        return left + (red ? 0 : 1);
+    }
+
+    /**
+     * Checks the max hi of every node in an interval subtree.
+     * @param name The name of the run.
+     * @param node The root of the subtree.
+     * @return The largest hi in the subtree, or Long.MIN_VALUE if it is empty.
+     */
+    private static long checkMaxHi(String name, IntervalRbtNode node){
+        if(node == null){
+            return Long.MIN_VALUE;
+        }
+        long max = Math.max(node.getHi(), Math.max(
+            checkMaxHi(name, (IntervalRbtNode) node.getLeft()),
+            checkMaxHi(name, (IntervalRbtNode) node.getRight())));
+        if(node.getMaxHi() != max){
+            fail(name, "a node has max hi " + node.getMaxHi() + " but its subtree ends at " + max);
+        }
+        return max;
+    }
+
+    /**
+     * Compares the keys of an int tree with a TreeSet, in order.
+     * @param name The name of the run.
+     * @param tree The tree.
+     * @param model The keys the tree should hold.
+     */
+    private static void checkIntKeys(String name, Rbt tree, TreeSet<Integer> model){
+        Iterator<Integer> expected = model.iterator();
+        for(RbtNode cur = RbtBase.minNode(tree.root); cur != null; cur = RbtBase.nextNode(cur)){
+            if(!expected.hasNext() || cur.getData() != expected.next()){
+                fail(name, "the keys do not match the TreeSet");
+            }
+        }
+        if(expected.hasNext()){
+            fail(name, "the keys do not match the TreeSet");
+        }
+    }
+
+    private static boolean isRed(RbtNode node){
+        return node != null && node.getColor() == RbtNode.CL_RED;
+    }
+
+    private static void fail(String name, String message){
+        throw new IllegalStateException(name + ": " + message);
+    }
+
+    public static void main(String[] args){
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        System.out.printf("Checking %,d operations per tree, seed %d%n", ops, seed);
+        checkRbt("Rbt", new Rbt(), ops, random);
+        checkRbt("pooled Rbt", new Rbt(new RbtNodePool(64)), ops, random);
+        checkAppend("append Rbt", ops, random);
+        checkLong("LongRbt", ops, random);
+        checkInterval("IntervalRbt", ops, random);
+        checkBounded("BoundedRbt", ops, random);
+        checkExpiring("expiring BoundedRbt", ops, random);
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Description: A load generator for RbtServer.
+ * Opens a number of connections, each keeping a window of pipelined requests in flight,
+ * and reports the throughput and the latency percentiles at the end.
+ * Every request in the window is a batch of random inserts, deletes and searches.
+ *
+ * Usage: RbtLoadGen tcp [host:]port | unix path [connections] [seconds] [pipeline] [batch] [keys]
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+
+
+class RbtLoadGen {
+    // Percent of operations that are searches, the rest are split between inserts and deletes
+    private static final int SEARCH_PERCENT = 80;
+
+    private final SocketAddress address;
+    private final int pipeline;
+    private final int batch;
+    private final int keys;
+
+    /**
+     * Creates a load generator.
+     * @param address The server address.
+     * @param pipeline The number of requests each connection keeps in flight.
+     * @param batch The number of operations in each request.
+     * @param keys Keys are picked from 0 up to this number.
+     */
+    public RbtLoadGen(SocketAddress address, int pipeline, int batch, int keys){
+        if(pipeline < 1 || batch < 1 || batch > RbtServer.MAX_BATCH || keys < 1){
+            throw new IllegalArgumentException("Bad pipeline, batch or key count");
+        }
+        this.address = address;
+        this.pipeline = pipeline;
+        this.batch = batch;
+        this.keys = keys;
+    }
+
+    /**
+     * Runs the load on a number of connections and merges their results.
+     * @param connections The number of connections.
+     * @param seconds How long to run.
+     * @return The latencies of every request, the operation count and the time taken.
+     */
+    public LatencyHistogram run(int connections, int seconds) throws InterruptedException{
+        LatencyHistogram[] results = new LatencyHistogram[connections];
+        Thread[] threads = new Thread[connections];
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+
+        for(int i = 0; i < connections; i++){
+            int index = i;
+            results[i] = new LatencyHistogram();
+            threads[i] = new Thread(() -> {
+                try{
+                    runConnection(results[index], deadline, index);
+                } catch(IOException e){
+                    System.out.println("Connection " + index + " failed: " + e.getMessage());
+                }
+            });
+            threads[i].start();
+        }
+
+        LatencyHistogram total = new LatencyHistogram();
+        for(int i = 0; i < connections; i++){
+            threads[i].join();
+            total.add(results[i]);
+        }
+        // Connections finish their last window after the deadline, so use the real time
+        total.setElapsedNanos(System.nanoTime() - start);
+        return total;
+    }
+
+    /**
+     * Sends windows of pipelined requests on one connection until the deadline.
+     * @param histogram Where to record the latency of each request.
+     * @param deadline The nanoTime to stop at.
+     * @param seed The seed for the random operations.
+     */
+    private void runConnection(LatencyHistogram histogram, long deadline, int seed) throws IOException{
+        try(SocketChannel channel = SocketChannel.open(address)){
+            if(!(address instanceof UnixDomainSocketAddress)){
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            SplittableRandom random = new SplittableRandom(seed);
+            long[] sent = new long[pipeline];
+
+            while(System.nanoTime() < deadline){
+                // Send the whole window, then read the answers in order
+                for(int i = 0; i < pipeline; i++){
+                    sent[i] = System.nanoTime();
+                    writeBatch(out, random);
+                }
+                out.flush();
+
+                for(int i = 0; i < pipeline; i++){
+                    for(int j = 0; j < batch; j++){
+                        if(in.readByte() == RbtServer.ST_ERROR){
+                            throw new IOException("The server rejected a request");
+                        }
+                    }
+                    histogram.record(System.nanoTime() - sent[i], batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes one batch of random operations.
+     * @param out The connection output.
+     * @param random The source of keys and operations.
+     */
+    private void writeBatch(DataOutputStream out, SplittableRandom random) throws IOException{
+        out.writeByte(RbtServer.OP_BATCH);
+        out.writeShort(batch);
+        for(int i = 0; i < batch; i++){
+            int roll = random.nextInt(100);
+            if(roll < SEARCH_PERCENT){
+                out.writeByte(RbtServer.OP_SEARCH);
+            } else if(roll % 2 == 0){
+                out.writeByte(RbtServer.OP_INSERT);
+            } else{
+                out.writeByte(RbtServer.OP_DELETE);
+            }
+            out.writeInt(random.nextInt(keys));
+        }
+    }
+
+    /**
+     * Runs the load generator and prints the results.
+     * @param args The socket kind and address, then the optional settings.
+     */
+    public static void main(String[] args) throws InterruptedException{
+        if(args.length < 2){
+            System.out.println("Usage: RbtLoadGen tcp [host:]port | unix path [connections] [seconds] [pipeline] [batch] [keys]");
+            return;
+        }
+        SocketAddress address = RbtServer.parseAddress(args[0], args[1]);
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int pipeline = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        int batch = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int keys = args.length > 6 ? Integer.parseInt(args[6]) : 1_000_000;
+
+        LatencyHistogram result = new RbtLoadGen(address, pipeline, batch, keys).run(connections, seconds);
+
+        double elapsed = result.getElapsedNanos() / 1e9;
+        System.out.printf("%d connections, pipeline %d, batch %d, %d keys, %.2f s%n", connections, pipeline, batch, keys, elapsed);
+        System.out.printf("Throughput: %.0f ops/s (%d requests)%n", result.getOperations() / elapsed, result.getCount());
+        System.out.printf("Request latency us: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+            result.percentile(50) / 1000.0, result.percentile(90) / 1000.0,
+            result.percentile(99) / 1000.0, result.percentile(99.9) / 1000.0,
+            result.getMax() / 1000.0);
+    }
+}
+
+
+
+
+/**
+ * Counts latencies in log scale buckets, 16 per power of two, so percentiles are
+ * within about 6 percent and recording never allocates.
+ */
+class LatencyHistogram{
+    private static final int SUB_BUCKETS = 16;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long count;
+    private long operations;
+    private long max;
+
+    // The wall time the requests were made over, set by whoever ran them
+    private long elapsedNanos;
+
+    /**
+     * Records the latency of one request.
+     * @param nanos The latency in nanoseconds.
+     * @param ops The number of operations in the request.
+     */
+    public void record(long nanos, int ops){
+        counts[bucket(Math.max(nanos, 1))]++;
+        count++;
+        operations += ops;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     * @param other The histogram to add.
+     */
+    public void add(LatencyHistogram other){
+        for(int i = 0; i < counts.length; i++){
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        operations += other.operations;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the latency that the given percent of requests were at or under.
+     * @param percent The percentile, from 0 to 100.
+     * @return The upper edge of the bucket holding the percentile, in nanoseconds.
+     */
+    public long percentile(double percent){
+        long target = (long) Math.ceil(count * percent / 100.0);
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if(seen >= target && seen > 0){
+                return Math.min(upperEdge(i), max);
+            }
+        }
+        return max;
+    }
+
+    // Accessors
+    public long getCount(){
+        return this.count;
+    }
+    public long getOperations(){
+        return this.operations;
+    }
+    public long getMax(){
+        return this.max;
+    }
+    public long getElapsedNanos(){
+        return this.elapsedNanos;
+    }
+
+    // Mutators
+    public void setElapsedNanos(long elapsedNanos){
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Finds the bucket for a latency: the power of two, then the next four bits.
+     * @param nanos The latency, at least 1.
+     * @return The bucket index.
+     */
+    private static int bucket(long nanos){
+        int power = 63 - Long.numberOfLeadingZeros(nanos);
+        // Below 16 ns there are not four more bits, so each power gets one bucket
+        if(power < 4){
+            return power * SUB_BUCKETS;
+        }
+        return power * SUB_BUCKETS + (int) (nanos >>> (power - 4)) % SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest latency that falls in a bucket.
+     * @param index The bucket index.
+     * @return The upper edge in nanoseconds.
+     */
+    private static long upperEdge(int index){
+        int power = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if(power < 4){
+            return (1L << (power + 1)) - 1;
+        }
+        return (1L << power) + ((long) (sub + 1) << (power - 4)) - 1;
+    }
+}
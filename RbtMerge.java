@@ -0,0 +1,169 @@
+/**
+ * Description: Merges the keys of many Rbts into one sorted file.
+ * Walks every tree with a cursor and picks the smallest head with a min-heap of ints,
+ * so memory stays the same however many keys there are: one cursor and one heap slot
+ * per tree, and one direct buffer for the output. Keys found in more than one tree
+ * are written once.
+ *
+ * The file holds the keys in ascending order in one of two formats:
+ *   RAW:   each key as a 4 byte big endian int.
+ *   DELTA: each key as an unsigned LEB128 varint of its distance from the previous key,
+ *          the first one measured from Integer.MIN_VALUE. Close keys take one or two bytes.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+class RbtMerge {
+    // Output formats
+    public static final int RAW = 0;
+    public static final int DELTA = 1;
+
+    // Size of the direct output buffer
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    // The most bytes one key can take in either format
+    private static final int MAX_KEY_BYTES = 5;
+
+    /**
+     * Merges the trees into the channel at its current position.
+     * The trees must not change during the merge.
+     * @param trees The trees to merge.
+     * @param out The channel to write to.
+     * @param format RAW or DELTA.
+     * @return The number of keys written.
+     * @throws IOException If the channel can not be written.
+     */
+    public static long merge(Rbt[] trees, FileChannel out, int format) throws IOException{
+        if(format != RAW && format != DELTA){
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        RbtCursor[] cursors = new RbtCursor[trees.length];
+
+        // The head key of each cursor, and a heap of cursor indexes ordered by head
+        int[] heads = new int[trees.length];
+        int[] heap = new int[trees.length];
+        int heapSize = 0;
+
+        for(int i = 0; i < trees.length; i++){
+            cursors[i] = trees[i].cursor();
+            if(cursors[i].hasNext()){
+                heads[i] = cursors[i].next();
+                heap[heapSize] = i;
+                siftUp(heap, heads, heapSize);
+                heapSize++;
+            }
+        }
+
+        long written = 0;
+        long previous = Integer.MIN_VALUE;
+        while(heapSize > 0){
+            int top = heap[0];
+            int key = heads[top];
+
+            // Skip keys already written from another tree
+            if(written == 0 || key != previous){
+                if(buffer.remaining() < MAX_KEY_BYTES){
+                    drain(buffer, out);
+                }
+                if(format == RAW){
+                    buffer.putInt(key);
+                } else{
+                    putVarint(buffer, key - previous);
+                }
+                previous = key;
+                written++;
+            }
+
+            // Move the cursor on, or drop it from the heap when it runs out
+            if(cursors[top].hasNext()){
+                heads[top] = cursors[top].next();
+            } else{
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heads, heapSize);
+        }
+
+        drain(buffer, out);
+        return written;
+    }
+
+    /**
+     * Writes out everything in the buffer and clears it.
+     * @param buffer The buffer.
+     * @param out The channel to write to.
+     */
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException{
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes a non negative value seven bits at a time, low bits first.
+     * @param buffer The buffer.
+     * @param value The value, below 2^32.
+     */
+    private static void putVarint(ByteBuffer buffer, long value){
+        while(value >= 0x80){
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Moves a new heap entry up until its parent is smaller.
+     * @param heap The heap of cursor indexes.
+     * @param heads The head key of each cursor.
+     * @param i The position of the new entry.
+     */
+    private static void siftUp(int[] heap, int[] heads, int i){
+        int entry = heap[i];
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            if(heads[heap[parent]] <= heads[entry]){
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    /**
+     * Moves the top heap entry down until its children are bigger.
+     * @param heap The heap of cursor indexes.
+     * @param heads The head key of each cursor.
+     * @param size The number of entries in the heap.
+     */
+    private static void siftDown(int[] heap, int[] heads, int size){
+        if(size == 0){
+            return;
+        }
+        int entry = heap[0];
+        int i = 0;
+        while(true){
+            int child = 2 * i + 1;
+            if(child >= size){
+                break;
+            }
+            // Pick the smaller child
+            if(child + 1 < size && heads[heap[child + 1]] < heads[heap[child]]){
+                child++;
+            }
+            if(heads[entry] <= heads[heap[child]]){
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Description: A bounded pool of free RbtNodes.
+ * An Rbt built with a pool hands every node it deletes to the pool, and takes
+ * nodes back out of it on insert before allocating new ones. Under steady churn
+ * the tree then stops making garbage.
+ * A pool is not thread safe. perThread() gives a pool that keeps one stack per
+ * thread, for trees that are used from several threads under a lock.
+ */
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+
+class RbtNodePool {
+    // Default number of free nodes a pool holds
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // The free nodes, used as a stack
+    private final RbtNode[] free;
+    private int count;
+
+    // Number of nodes handed out from the pool instead of allocated
+    private long reused;
+
+    /**
+     * Creates a pool that holds DEFAULT_CAPACITY free nodes.
+     */
+    public RbtNodePool(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool.
+     * @param capacity The most free nodes to hold. Nodes released to a full pool are dropped.
+     */
+    public RbtNodePool(int capacity){
+        this(new RbtNode[checkCapacity(capacity)]);
+    }
+
+    /**
+     * Creates a pool over a stack. Pools that keep their nodes elsewhere pass null.
+     * @param free The stack of free nodes, or null.
+     */
+    RbtNodePool(RbtNode[] free){
+        this.free = free;
+    }
+
+    /**
+     * Creates a pool that keeps a separate stack of the given capacity for each thread.
+     * @param capacity The most free nodes to hold for each thread.
+     * @return The pool.
+     */
+    public static RbtNodePool perThread(int capacity){
+        return new ThreadLocalRbtNodePool(capacity);
+    }
+
+    /**
+     * Checks that a capacity is not negative.
+     * @param capacity The capacity.
+     * @return The capacity.
+     */
+    static int checkCapacity(int capacity){
+        if(capacity < 0){
+            throw new IllegalArgumentException("The capacity can not be negative");
+        }
+        return capacity;
+    }
+
+    /**
+     * Takes a free node from the pool, or allocates one if the pool is empty.
+     * @param data The data for the node.
+     * @return A red node with no links.
+     */
+    public RbtNode acquire(int data){
+        if(count == 0){
+            return new RbtNode(data);
+        }
+        RbtNode node = free[--count];
+        free[count] = null;
+        reused++;
+
+        node.setData(data);
+        node.setColor(RbtNode.CL_RED);
+        return node;
+    }
+
+    /**
+     * Gives a node that left its tree back to the pool.
+     * The links are cleared so the pool does not keep other nodes alive.
+     * @param node The unlinked node.
+     */
+    public void release(RbtNode node){
+        if(count == free.length){
+            return;
+        }
+        node.setLeft(null);
+        node.setRight(null);
+        node.setParent(null);
+        free[count++] = node;
+    }
+
+    /**
+     * Returns the number of free nodes in the pool.
+     * @return The number of free nodes.
+     */
+    public int size(){
+        return this.count;
+    }
+
+    /**
+     * Returns the number of nodes handed out from the pool instead of allocated.
+     * @return The number of reused nodes.
+     */
+    public long reused(){
+        return this.reused;
+    }
+}
+
+
+
+
+/**
+ * A pool that sends each call to a pool owned by the calling thread.
+ * A node deleted on one thread and inserted on another moves between the stacks.
+ * size() and reused() are totals over every thread, so they can be read from any
+ * thread. They read the other stacks without a lock, so they can lag a little
+ * behind threads that are busy.
+ */
+class ThreadLocalRbtNodePool extends RbtNodePool{
+
+    private final ThreadLocal<RbtNodePool> pools;
+
+    // The stacks of every thread, dropped once their thread is gone
+    private final ConcurrentLinkedQueue<WeakReference<RbtNodePool>> stacks = new ConcurrentLinkedQueue<>();
+
+    // Nodes reused over every thread, kept after a thread ends
+    private final LongAdder reused = new LongAdder();
+
+    /**
+     * Creates the per thread pool.
+     * @param capacity The most free nodes to hold for each thread.
+     */
+    public ThreadLocalRbtNodePool(int capacity){
+        super(null);
+        checkCapacity(capacity);
+        this.pools = ThreadLocal.withInitial(() -> {
+            RbtNodePool pool = new RbtNodePool(capacity);
+            stacks.removeIf(ref -> ref.get() == null);
+            stacks.add(new WeakReference<>(pool));
+            return pool;
+        });
+    }
+
+    // Every call works on the stack of the calling thread
+    @Override
+    public RbtNode acquire(int data){
+        RbtNodePool pool = pools.get();
+        if(pool.size() > 0){
+            reused.increment();
+        }
+        return pool.acquire(data);
+    }
+    @Override
+    public void release(RbtNode node){
+        pools.get().release(node);
+    }
+
+    /**
+     * Returns the number of free nodes over the stacks of every live thread.
+     * @return The number of free nodes.
+     */
+    @Override
+    public int size(){
+        int total = 0;
+        for(WeakReference<RbtNodePool> ref : stacks){
+            RbtNodePool pool = ref.get();
+            if(pool != null){
+                total += pool.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of nodes reused over every thread.
+     * @return The number of reused nodes.
+     */
+    @Override
+    public long reused(){
+        return reused.sum();
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Description: A churn benchmark for RbtNodePool.
+ * Fills a tree, then deletes a random key and inserts a new one over and over,
+ * first with plain allocation and then with a pool. For each run it prints the
+ * throughput, the number of garbage collections and their time, and the
+ * allocation rate of the churning threads.
+ * The last runs churn from several threads that share the tree under a lock,
+ * which is what the per thread pool is for.
+ *
+ * Usage: RbtPoolBench [keys] [seconds] [threads]
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+
+class RbtPoolBench {
+
+    /**
+     * Runs the churn for a while on a full tree and prints what it cost.
+     * @param name The name of the run.
+     * @param tree The empty tree to run on.
+     * @param keys The number of keys kept in the tree.
+     * @param seconds How long to churn.
+     * @param threads The number of threads churning. More than one share the tree under a lock.
+     */
+    private static void run(String name, Rbt tree, int keys, int seconds, int threads) throws InterruptedException{
+        SplittableRandom random = new SplittableRandom(42);
+        int[] present = new int[keys];
+
+        // Fill the tree
+        for(int i = 0; i < keys; i++){
+            present[i] = newKey(tree, random);
+            tree.insert(present[i]);
+        }
+
+        // Warm up, then measure
+        churnAll(tree, present, random, threads, 1);
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+
+        long[] result = churnAll(tree, present, random, threads, seconds);
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        double allocatedMb = result[1] / (1024.0 * 1024.0);
+        System.out.printf("%-10s %,12.0f ops/s  %5d GCs  %6d ms in GC  %10.1f MB/s allocated%n",
+            name, result[0] / elapsed, gcCount() - gcCount, gcMillis() - gcMillis, allocatedMb / elapsed);
+    }
+
+    /**
+     * Churns from a number of threads, each on its own share of the keys.
+     * @param tree The tree.
+     * @param present The keys in the tree.
+     * @param random The source of keys, split for each thread.
+     * @param threads The number of threads. More than one lock the tree for each replacement.
+     * @param seconds How long to churn.
+     * @return The number of deletes plus inserts, and the bytes the threads allocated.
+     */
+    private static long[] churnAll(Rbt tree, int[] present, SplittableRandom random, int threads, int seconds) throws InterruptedException{
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[] ops = new long[threads];
+        long[] allocated = new long[threads];
+        Thread[] workers = new Thread[threads];
+
+        for(int t = 0; t < threads; t++){
+            int index = t;
+            int from = (int) ((long) present.length * t / threads);
+            int to = (int) ((long) present.length * (t + 1) / threads);
+            SplittableRandom own = random.split();
+            workers[t] = new Thread(() -> {
+                long before = allocatedBytes();
+                ops[index] = churn(tree, present, from, to, own, deadline, threads > 1);
+                allocated[index] = allocatedBytes() - before;
+            });
+            workers[t].start();
+        }
+
+        long[] total = new long[2];
+        for(int t = 0; t < threads; t++){
+            workers[t].join();
+            total[0] += ops[t];
+            total[1] += allocated[t];
+        }
+        return total;
+    }
+
+    /**
+     * Replaces random keys in a share of the keys with new ones until the deadline.
+     * @param tree The tree.
+     * @param present The keys in the tree.
+     * @param from The first index of the share.
+     * @param to The index after the share.
+     * @param random The source of keys.
+     * @param deadline The nanoTime to stop at.
+     * @param locked True to lock the tree for each replacement.
+     * @return The number of deletes plus inserts.
+     */
+    private static long churn(Rbt tree, int[] present, int from, int to, SplittableRandom random, long deadline, boolean locked){
+        long ops = 0;
+        while(System.nanoTime() < deadline){
+            // Check the clock once every thousand replacements
+            for(int i = 0; i < 1000; i++){
+                int index = random.nextInt(from, to);
+                if(locked){
+                    synchronized(tree){
+                        replace(tree, present, index, random);
+                    }
+                } else{
+                    replace(tree, present, index, random);
+                }
+            }
+            ops += 2000;
+        }
+        return ops;
+    }
+
+    /**
+     * Deletes one key and inserts a new one in its place.
+     * @param tree The tree.
+     * @param present The keys in the tree.
+     * @param index The index of the key to replace.
+     * @param random The source of keys.
+     */
+    private static void replace(Rbt tree, int[] present, int index, SplittableRandom random){
+        tree.delete(present[index]);
+        present[index] = newKey(tree, random);
+        tree.insert(present[index]);
+    }
+
+    /**
+     * Picks a random key that is not in the tree.
+     * @param tree The tree.
+     * @param random The source of keys.
+     * @return The key.
+     */
+    private static int newKey(Rbt tree, SplittableRandom random){
+        int key = random.nextInt();
+        while(tree.search(key)){
+            key = random.nextInt();
+        }
+        return key;
+    }
+
+    /**
+     * Returns the number of collections so far, over every collector.
+     * @return The collection count.
+     */
+    private static long gcCount(){
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent in collections so far, over every collector.
+     * @return The collection time in milliseconds.
+     */
+    private static long gcMillis(){
+        long millis = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     * Returns the bytes allocated by this thread so far, or 0 if the JVM can not tell.
+     * @return The allocated bytes.
+     */
+    private static long allocatedBytes(){
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean){
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws InterruptedException{
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        System.out.printf("Churning %,d keys for %d s per run%n", keys, seconds);
+        run("allocate", new Rbt(), keys, seconds, 1);
+        System.gc();
+        run("pool", new Rbt(new RbtNodePool()), keys, seconds, 1);
+        System.gc();
+        run("perThread", new Rbt(RbtNodePool.perThread(RbtNodePool.DEFAULT_CAPACITY)), keys, seconds, 1);
+
+        // A node deleted on one thread is often inserted on another, so the stacks move nodes around
+        System.out.printf("%d threads sharing the tree under a lock%n", threads);
+        System.gc();
+        run("allocate", new Rbt(), keys, seconds, threads);
+        System.gc();
+        RbtNodePool shared = RbtNodePool.perThread(RbtNodePool.DEFAULT_CAPACITY);
+        run("perThread", new Rbt(shared), keys, seconds, threads);
+        System.out.printf("perThread reused %,d nodes, %,d free%n", shared.reused(), shared.size());
+    }
+}
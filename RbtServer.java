@@ -0,0 +1,404 @@
+/**
+ * Description: A headless server that shares one Rbt over TCP or a Unix socket.
+ * Each connection runs on its own thread, a virtual thread when the runtime has them.
+ *
+ * The protocol is binary and big endian. A request is an opcode byte and its arguments:
+ *   INSERT key            -> status (1 if the key was added)
+ *   DELETE key            -> status (1 if the key was removed)
+ *   SEARCH key            -> status (1 if the key was found)
+ *   RANGE  lo hi limit    -> count, then count keys in order
+ *   BATCH  n, n requests  -> the n responses, one after the other
+ * Keys, bounds, limits and counts are 4 byte ints, n is an unsigned short.
+ * A batch runs under one lock, so the tree does not change in the middle of it.
+ * Clients can pipeline requests. Responses come back in order and are flushed once
+ * the server has run out of buffered requests.
+ * A bad request gets an ERROR status and the connection is closed.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+
+class RbtServer {
+    // Request opcodes
+    public static final byte OP_INSERT = 1;
+    public static final byte OP_DELETE = 2;
+    public static final byte OP_SEARCH = 3;
+    public static final byte OP_RANGE = 4;
+    public static final byte OP_BATCH = 5;
+
+    // Response statuses
+    public static final byte ST_FALSE = 0;
+    public static final byte ST_TRUE = 1;
+    public static final byte ST_ERROR = -1;
+
+    // The most requests in one batch, and keys in all the ranges of one batch
+    public static final int MAX_BATCH = 4096;
+    public static final int MAX_RANGE = 65536;
+
+    // Size of the socket buffers for each connection
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Rbt tree;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+
+    // True if connections run on virtual threads, false for a cached pool of platform threads
+    private final boolean virtualThreads;
+
+    /**
+     * Opens a server for the tree. Call serve() to start taking connections.
+     * @param tree The tree to share. Only this server should use it while it runs.
+     * @param address An InetSocketAddress or a UnixDomainSocketAddress to listen on.
+     * @throws IOException If the address can not be bound.
+     */
+    public RbtServer(Rbt tree, SocketAddress address) throws IOException{
+        this.tree = tree;
+
+        if(address instanceof UnixDomainSocketAddress){
+            // Remove a socket file left behind by an earlier server
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else{
+            this.server = ServerSocketChannel.open();
+        }
+        this.server.bind(address);
+
+        ExecutorService virtual = newVirtualWorkers();
+        this.virtualThreads = virtual != null;
+        this.workers = virtualThreads ? virtual : Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Takes connections until the server is closed, each on its own thread.
+     * @throws IOException If accepting fails for a reason other than close().
+     */
+    public void serve() throws IOException{
+        while(server.isOpen()){
+            SocketChannel channel;
+            try{
+                channel = server.accept();
+            } catch(IOException e){
+                // close() was called
+                if(!server.isOpen()){
+                    return;
+                }
+                throw e;
+            }
+            workers.execute(() -> handle(channel));
+        }
+    }
+
+    /**
+     * Stops taking connections. Open connections finish on their own.
+     * @throws IOException If the socket can not be closed.
+     */
+    public void close() throws IOException{
+        server.close();
+        workers.shutdown();
+    }
+
+    /**
+     * Returns the address the server is listening on.
+     * @return The bound address.
+     * @throws IOException If the server is closed.
+     */
+    public SocketAddress getAddress() throws IOException{
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Returns true if connections run on virtual threads.
+     * @return True for virtual threads, false for a cached pool of platform threads.
+     */
+    public boolean usesVirtualThreads(){
+        return this.virtualThreads;
+    }
+
+    /**
+     * Reads and answers requests from one connection until it closes.
+     * @param channel The connection.
+     */
+    private void handle(SocketChannel channel){
+        try(channel){
+            if(channel.getRemoteAddress() instanceof InetSocketAddress){
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            RbtSession session = new RbtSession();
+
+            while(true){
+                int op = in.read();
+                if(op < 0){
+                    break;
+                }
+
+                // Read the whole request before taking the lock
+                boolean ok;
+                session.reset();
+                if(op == OP_BATCH){
+                    ok = session.readBatch(in);
+                } else{
+                    ok = session.readRequest(op, in);
+                }
+                if(!ok){
+                    out.writeByte(ST_ERROR);
+                    out.flush();
+                    break;
+                }
+
+                run(session);
+                session.write(out);
+
+                // Answer everything that came in together with one flush
+                if(in.available() == 0){
+                    out.flush();
+                }
+            }
+        } catch(IOException e){
+            // The client went away, nothing to answer
+        }
+    }
+
+    /**
+     * Runs the requests of a session against the tree under one lock.
+     * Results are kept in the session so nothing is written while the lock is held.
+     * @param session The session holding the requests.
+     */
+    private void run(RbtSession session){
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        boolean write = session.hasWrite();
+
+        if(write){
+            writeLock.lock();
+        } else{
+            readLock.lock();
+        }
+        try{
+            session.rangeSize = 0;
+            for(int i = 0; i < session.count; i++){
+                int key = session.keys[i];
+                switch(session.ops[i]){
+                    case OP_INSERT: {
+                        int before = tree.size();
+                        tree.insert(key);
+                        session.results[i] = tree.size() != before ? ST_TRUE : ST_FALSE;
+                        break;
+                    }
+                    case OP_DELETE: {
+                        int before = tree.size();
+                        tree.delete(key);
+                        session.results[i] = tree.size() != before ? ST_TRUE : ST_FALSE;
+                        break;
+                    }
+                    case OP_SEARCH:
+                        session.results[i] = tree.search(key) ? ST_TRUE : ST_FALSE;
+                        break;
+                    case OP_RANGE:
+                        // The result is where this range starts in the range keys
+                        session.results[i] = session.rangeSize;
+                        session.rangeCounts[i] = tree.range(key, session.his[i], session.limits[i], session);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally{
+            if(write){
+                writeLock.unlock();
+            } else{
+                readLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Creates an executor that runs each connection on a virtual thread.
+     * Virtual threads need Java 21, so older runtimes get null.
+     * @return The executor, or null if the runtime has no virtual threads.
+     */
+    private static ExecutorService newVirtualWorkers(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e){
+            return null;
+        }
+    }
+
+    /**
+     * Parses an address given as "tcp host:port", "tcp port" or "unix path".
+     * @param kind Either tcp or unix.
+     * @param where The host and port, the port, or the socket path.
+     * @return The address.
+     */
+    public static SocketAddress parseAddress(String kind, String where){
+        if(kind.equals("unix")){
+            return UnixDomainSocketAddress.of(Path.of(where));
+        }
+        if(!kind.equals("tcp")){
+            throw new IllegalArgumentException("Unknown socket kind " + kind + ", use tcp or unix");
+        }
+        int colon = where.lastIndexOf(':');
+        if(colon < 0){
+            return new InetSocketAddress(Integer.parseInt(where));
+        }
+        return new InetSocketAddress(where.substring(0, colon), Integer.parseInt(where.substring(colon + 1)));
+    }
+
+    /**
+     * Starts a server for an empty tree.
+     * Usage: RbtServer tcp [host:]port | RbtServer unix path
+     * @param args The socket kind and address.
+     */
+    public static void main(String[] args) throws IOException{
+        if(args.length != 2){
+            System.out.println("Usage: RbtServer tcp [host:]port | RbtServer unix path");
+            return;
+        }
+        RbtServer server = new RbtServer(new Rbt(), parseAddress(args[0], args[1]));
+        System.out.println("Serving on " + server.getAddress());
+        // Say which threads are used, so load numbers are not taken for the wrong kind
+        System.out.println("Connections run on " + (server.usesVirtualThreads() ? "virtual threads" : "a cached pool of platform threads"));
+        server.serve();
+    }
+}
+
+
+
+
+/**
+ * The requests and results of one connection. Reused for every request so
+ * a connection allocates nothing once its arrays are big enough.
+ */
+class RbtSession implements IntConsumer{
+    // The requests, one entry per request in a batch
+    byte[] ops = new byte[RbtServer.MAX_BATCH];
+    int[] keys = new int[RbtServer.MAX_BATCH];
+    int[] his = new int[RbtServer.MAX_BATCH];
+    int[] limits = new int[RbtServer.MAX_BATCH];
+    int count;
+    int rangeTotal;
+
+    // The results, and for ranges the number of keys found
+    int[] results = new int[RbtServer.MAX_BATCH];
+    int[] rangeCounts = new int[RbtServer.MAX_BATCH];
+
+    // The keys found by every range in the batch
+    int[] rangeKeys = new int[1024];
+    int rangeSize;
+
+    /**
+     * Clears the requests before reading the next one.
+     */
+    void reset(){
+        count = 0;
+        rangeTotal = 0;
+    }
+
+    /**
+     * Reads a batch of requests.
+     * @param in The connection input.
+     * @return False if the batch is too big or holds a bad request.
+     */
+    boolean readBatch(DataInputStream in) throws IOException{
+        int n = in.readUnsignedShort();
+        if(n > RbtServer.MAX_BATCH){
+            return false;
+        }
+        for(int i = 0; i < n; i++){
+            if(!readRequest(in.readUnsignedByte(), in)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads one request and adds it to the session.
+     * @param op The opcode, already read.
+     * @param in The connection input.
+     * @return False if the opcode is unknown or the range limits add up to too much.
+     */
+    boolean readRequest(int op, DataInputStream in) throws IOException{
+        if(op < RbtServer.OP_INSERT || op > RbtServer.OP_RANGE){
+            return false;
+        }
+        ops[count] = (byte) op;
+        keys[count] = in.readInt();
+        if(op == RbtServer.OP_RANGE){
+            his[count] = in.readInt();
+            limits[count] = in.readInt();
+            // Check against what is left, so the total can not overflow
+            if(limits[count] < 0 || limits[count] > RbtServer.MAX_RANGE - rangeTotal){
+                return false;
+            }
+            rangeTotal += limits[count];
+        }
+        count++;
+        return true;
+    }
+
+    /**
+     * Returns true if any request in the session changes the tree.
+     * @return True if the session needs the write lock.
+     */
+    boolean hasWrite(){
+        for(int i = 0; i < count; i++){
+            if(ops[i] == RbtServer.OP_INSERT || ops[i] == RbtServer.OP_DELETE){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects a key found by a range request.
+     * @param key The key.
+     */
+    @Override
+    public void accept(int key){
+        if(rangeSize == rangeKeys.length){
+            rangeKeys = Arrays.copyOf(rangeKeys, rangeKeys.length * 2);
+        }
+        rangeKeys[rangeSize++] = key;
+    }
+
+    /**
+     * Writes the results of every request in the session.
+     * @param out The connection output.
+     */
+    void write(DataOutputStream out) throws IOException{
+        for(int i = 0; i < count; i++){
+            if(ops[i] == RbtServer.OP_RANGE){
+                int start = results[i];
+                out.writeInt(rangeCounts[i]);
+                for(int j = start; j < start + rangeCounts[i]; j++){
+                    out.writeInt(rangeKeys[j]);
+                }
+            } else{
+                out.writeByte(results[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/**
+ * Description: An Rbt with one writer and any number of readers that never see it mid-rotation.
+ * The writer changes a private tree and now and then publishes a read replica: the keys
+ * in a sorted array, swapped in through an atomic reference. Readers search the newest
+ * replica with a binary search and never wait on the writer or on each other.
+ *
+ * A replica is published after a number of writes, or on the first write or call to
+ * publishIfDue() once the current replica is older than the staleness limit.
+ *
+ * Old replicas are reclaimed by epoch. Each reader announces the epoch it entered in,
+ * and a replica retired at epoch E can be reused once no reader is still in an earlier
+ * epoch. The writer then builds the next replica into the old array instead of a new one.
+ * A replica that is never reclaimed is just left to the garbage collector.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+
+class ReplicatedRbt {
+    // Use for publishEvery or maxStalenessMillis to turn that trigger off
+    public static final int NO_LIMIT = 0;
+
+    // The slot value of a reader that is not reading
+    static final long IDLE = Long.MAX_VALUE;
+
+    // The most retired replicas kept for reuse
+    private static final int MAX_RETIRED = 2;
+
+    // The writer's tree
+    private final Rbt tree = new Rbt();
+
+    // The newest replica, and the epoch it was published in
+    private final AtomicReference<RbtReplica> current = new AtomicReference<>(new RbtReplica(new int[0], 0));
+    final AtomicLong epoch = new AtomicLong();
+
+    // The epoch each reader entered in, or IDLE
+    private final CopyOnWriteArrayList<AtomicLong> readerSlots = new CopyOnWriteArrayList<>();
+
+    // Replicas that readers may still be in, oldest first
+    private final RbtReplica[] retired = new RbtReplica[MAX_RETIRED];
+    private int retiredCount;
+
+    // Publication triggers
+    private final int publishEvery;
+    private final long maxStalenessNanos;
+    private int writesSincePublish;
+    private long publishedAt = System.nanoTime();
+
+    // Build time instruments. Only the writer changes them, but any thread may read them
+    private volatile long publications;
+    private volatile long reclaimed;
+    private volatile long lastBuildNanos;
+    private volatile long maxBuildNanos;
+    private volatile long totalBuildNanos;
+
+    /**
+     * Creates a replicated tree.
+     * @param publishEvery Publish after this many writes, or NO_LIMIT.
+     * @param maxStalenessMillis Publish once the replica is this old and behind, or NO_LIMIT.
+     */
+    public ReplicatedRbt(int publishEvery, long maxStalenessMillis){
+        if(publishEvery < 0 || maxStalenessMillis < 0){
+            throw new IllegalArgumentException("Limits can not be negative");
+        }
+        this.publishEvery = publishEvery;
+        this.maxStalenessNanos = maxStalenessMillis * 1_000_000L;
+    }
+
+    /**
+     * Inserts data into the writer's tree and publishes if a trigger is due.
+     * Only the writer thread may call this.
+     * @param data The data to insert.
+     */
+    public void insert(int data){
+        int before = tree.size();
+        tree.insert(data);
+        if(tree.size() != before){
+            written();
+        }
+    }
+
+    /**
+     * Deletes data from the writer's tree and publishes if a trigger is due.
+     * Only the writer thread may call this.
+     * @param data The data to delete.
+     */
+    public void delete(int data){
+        int before = tree.size();
+        tree.delete(data);
+        if(tree.size() != before){
+            written();
+        }
+    }
+
+    /**
+     * Searches the writer's tree, which may be ahead of the replica.
+     * Only the writer thread may call this.
+     * @param data The data to search for.
+     * @return True if the data is in the writer's tree.
+     */
+    public boolean search(int data){
+        return tree.search(data);
+    }
+
+    /**
+     * Publishes if there are unpublished writes and the replica is past the staleness limit.
+     * A writer that goes quiet should call this to keep the staleness limit.
+     * @return True if a replica was published.
+     */
+    public boolean publishIfDue(){
+        if(writesSincePublish > 0 && maxStalenessNanos != NO_LIMIT && System.nanoTime() - publishedAt >= maxStalenessNanos){
+            publish();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Builds a replica of the writer's tree and makes it the one readers see.
+     * Only the writer thread may call this.
+     */
+    public void publish(){
+        long start = System.nanoTime();
+
+        // Copy the keys in order into a reclaimed array if one is big enough
+        int size = tree.size();
+        int[] keys = reclaim(size);
+        int i = 0;
+        for(RbtNode cur = RbtBase.minNode(tree.root); cur != null; cur = RbtBase.nextNode(cur)){
+            keys[i++] = cur.getData();
+        }
+
+        // Swap the replica in, then move to the next epoch
+        long next = epoch.get() + 1;
+        RbtReplica old = current.getAndSet(new RbtReplica(keys, size));
+        epoch.set(next);
+        retire(old, next);
+
+        writesSincePublish = 0;
+        publishedAt = System.nanoTime();
+
+        long took = publishedAt - start;
+        publications++;
+        lastBuildNanos = took;
+        maxBuildNanos = Math.max(maxBuildNanos, took);
+        totalBuildNanos += took;
+    }
+
+    /**
+     * Creates a reader. Each reader is for one thread at a time and should be closed when done.
+     * @return The reader.
+     */
+    public RbtReplicaReader newReader(){
+        AtomicLong slot = new AtomicLong(IDLE);
+        readerSlots.add(slot);
+        return new RbtReplicaReader(this, slot);
+    }
+
+    /**
+     * Returns the newest replica. Used by readers after they announce their epoch.
+     * @return The newest replica.
+     */
+    RbtReplica current(){
+        return current.get();
+    }
+
+    /**
+     * Forgets a closed reader.
+     * @param slot The slot of the reader.
+     */
+    void removeReader(AtomicLong slot){
+        readerSlots.remove(slot);
+    }
+
+    // Accessors for the instruments
+    public long publications(){
+        return this.publications;
+    }
+    public long reclaimed(){
+        return this.reclaimed;
+    }
+    public long lastBuildNanos(){
+        return this.lastBuildNanos;
+    }
+    public long maxBuildNanos(){
+        return this.maxBuildNanos;
+    }
+    public long totalBuildNanos(){
+        return this.totalBuildNanos;
+    }
+
+    /**
+     * Counts a write and publishes if a trigger is due.
+     */
+    private void written(){
+        writesSincePublish++;
+        if(publishEvery != NO_LIMIT && writesSincePublish >= publishEvery){
+            publish();
+        } else{
+            publishIfDue();
+        }
+    }
+
+    /**
+     * Adds a replica to the retired list, dropping the oldest if it is full.
+     * @param replica The replica that was just replaced.
+     * @param retiredAt The epoch it was replaced in.
+     */
+    private void retire(RbtReplica replica, long retiredAt){
+        if(retiredCount == MAX_RETIRED){
+            System.arraycopy(retired, 1, retired, 0, MAX_RETIRED - 1);
+            retiredCount--;
+        }
+        replica.retiredAt = retiredAt;
+        retired[retiredCount++] = replica;
+    }
+
+    /**
+     * Takes the array of a retired replica that no reader can be in, if it is big enough.
+     * @param size The number of keys the array must hold.
+     * @return An array of at least the size.
+     */
+    private int[] reclaim(int size){
+        long oldest = oldestReaderEpoch();
+        for(int i = 0; i < retiredCount; i++){
+            RbtReplica replica = retired[i];
+
+            // A reader that entered before the replica was retired may still be in it
+            if(replica.retiredAt <= oldest && replica.keys.length >= size){
+                System.arraycopy(retired, i + 1, retired, i, retiredCount - i - 1);
+                retired[--retiredCount] = null;
+                reclaimed++;
+                return replica.keys;
+            }
+        }
+        // Leave room to grow so the array can be reused by the next few builds
+        return new int[size + (size >> 3)];
+    }
+
+    /**
+     * Finds the earliest epoch any reader is in.
+     * @return The earliest epoch, or IDLE if no reader is reading.
+     */
+    private long oldestReaderEpoch(){
+        long oldest = IDLE;
+        for(AtomicLong slot : readerSlots){
+            oldest = Math.min(oldest, slot.get());
+        }
+        return oldest;
+    }
+}
+
+
+
+
+/**
+ * A published, read only copy of the keys of a tree, in order.
+ */
+class RbtReplica{
+    final int[] keys;
+    final int size;
+
+    // The epoch the replica was replaced in, set by the writer
+    long retiredAt;
+
+    /**
+     * Creates a replica.
+     * @param keys The keys in order. Only the first size are used.
+     * @param size The number of keys.
+     */
+    RbtReplica(int[] keys, int size){
+        this.keys = keys;
+        this.size = size;
+    }
+}
+
+
+
+
+/**
+ * Reads the newest replica of a ReplicatedRbt. Every call is wait free: it announces
+ * the current epoch, reads the replica, and goes back to idle.
+ * A reader is for one thread at a time.
+ */
+class RbtReplicaReader implements AutoCloseable{
+    private final ReplicatedRbt owner;
+    private final AtomicLong slot;
+
+    RbtReplicaReader(ReplicatedRbt owner, AtomicLong slot){
+        this.owner = owner;
+        this.slot = slot;
+    }
+
+    /**
+     * Searches the replica for the data.
+     * @param data The data to search for.
+     * @return True if the data is in the replica.
+     */
+    public boolean search(int data){
+        RbtReplica replica = enter();
+        try{
+            return Arrays.binarySearch(replica.keys, 0, replica.size, data) >= 0;
+        } finally{
+            exit();
+        }
+    }
+
+    /**
+     * Returns the smallest value in the replica.
+     * @return The smallest value, or -1 if it is empty like Rbt.min().
+     */
+    public int min(){
+        RbtReplica replica = enter();
+        try{
+            return replica.size == 0 ? -1 : replica.keys[0];
+        } finally{
+            exit();
+        }
+    }
+
+    /**
+     * Returns the largest value in the replica.
+     * @return The largest value, or -1 if it is empty like Rbt.max().
+     */
+    public int max(){
+        RbtReplica replica = enter();
+        try{
+            return replica.size == 0 ? -1 : replica.keys[replica.size - 1];
+        } finally{
+            exit();
+        }
+    }
+
+    /**
+     * Returns the number of values in the replica.
+     * @return The number of values.
+     */
+    public int size(){
+        RbtReplica replica = enter();
+        try{
+            return replica.size;
+        } finally{
+            exit();
+        }
+    }
+
+    /**
+     * Passes the values between lo and hi to the action in order.
+     * The action runs inside the read, so it should not block.
+     * @param lo The smallest value to include.
+     * @param hi The largest value to include.
+     * @param limit The most values to pass to the action.
+     * @param action The action to run on each value.
+     * @return The number of values passed to the action.
+     */
+    public int range(int lo, int hi, int limit, IntConsumer action){
+        RbtReplica replica = enter();
+        try{
+            int i = Arrays.binarySearch(replica.keys, 0, replica.size, lo);
+            if(i < 0){
+                i = -i - 1;
+            }
+            int count = 0;
+            while(i < replica.size && replica.keys[i] <= hi && count < limit){
+                action.accept(replica.keys[i++]);
+                count++;
+            }
+            return count;
+        } finally{
+            exit();
+        }
+    }
+
+    /**
+     * Returns the epoch of the newest replica, which grows by one per publication.
+     * @return The epoch.
+     */
+    public long epoch(){
+        return owner.epoch.get();
+    }
+
+    /**
+     * Stops the writer from waiting on this reader for reclamation.
+     */
+    @Override
+    public void close(){
+        slot.set(ReplicatedRbt.IDLE);
+        owner.removeReader(slot);
+    }
+
+    /**
+     * Announces the current epoch, then reads the newest replica.
+     * @return The replica to read.
+     */
+    private RbtReplica enter(){
+        slot.set(owner.epoch.get());
+        return owner.current();
+    }
+
+    /**
+     * Goes back to idle.
+     */
+    private void exit(){
+        slot.set(ReplicatedRbt.IDLE);
+    }
+}
@@ -0,0 +1,549 @@
+/**
+ * Description: A summarized view of an Rbt for trees too big to draw in full.
+ * Draws a few levels under one node, sideways with the larger keys on top, and
+ * shows each cut off subtree as a node count. The count stops at COUNT_LIMIT, so
+ * a frame costs about the same for ten nodes as for ten million.
+ *
+ * The view listens to the tree. A cut off subtree holds exactly the keys between
+ * the bounds its ancestors set, so its count only changes when a key between those
+ * bounds is linked or unlinked, whatever rotations moved it. Each change event drops
+ * the counts it can affect, and the next frame only counts those subtrees again.
+ * Use the view from the thread that changes the tree.
+ * It clears the screen with an escape code, so it never starts a process or sleeps.
+ */
+
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+class TreeView implements RbtListener {
+    // Vis only draws trees up to this size and height, and drops deeper nodes
+    public static final int FULL_DRAW_SIZE = 31;
+    public static final int FULL_DRAW_HEIGHT = 5;
+
+    // Default and largest number of levels to draw under the focused node
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int MAX_DEPTH = 8;
+
+    // The most nodes counted in one cut off subtree
+    public static final int COUNT_LIMIT = 10_000;
+
+    private static final String CLEAR = "\u001b[H\u001b[2J";
+
+    private final Rbt tree;
+    private final PrintStream out;
+    private final StringBuilder frame = new StringBuilder();
+
+    // Levels to draw under the focused node
+    private int depth = DEFAULT_DEPTH;
+
+    // The key of the focused node, or the root when there is no focus
+    private int focusKey;
+    private boolean hasFocus;
+
+    // The range of keys that can be under the focused node, set by findFocus()
+    private long focusLo;
+    private long focusHi;
+
+    // The counts of the cut off subtrees of the last frame, by the bounds of their keys
+    private long[] countLo = new long[1 << (MAX_DEPTH - 1)];
+    private long[] countHi = new long[1 << (MAX_DEPTH - 1)];
+    private int[] counts = new int[1 << (MAX_DEPTH - 1)];
+    private int countSize;
+
+    // The counts of the frame being drawn, swapped in once it is done
+    private long[] nextLo = new long[1 << (MAX_DEPTH - 1)];
+    private long[] nextHi = new long[1 << (MAX_DEPTH - 1)];
+    private int[] nextCounts = new int[1 << (MAX_DEPTH - 1)];
+    private int nextSize;
+
+    // Number of subtrees the last frame had to count again
+    private int recounted;
+
+    // True if the frame needs to be drawn again
+    private boolean dirty = true;
+
+    /**
+     * Creates a view and starts listening to the tree.
+     * @param tree The tree to show.
+     * @param out Where to draw the frames.
+     */
+    public TreeView(Rbt tree, PrintStream out){
+        this.tree = tree;
+        this.out = out;
+        tree.setListener(this);
+    }
+
+    /**
+     * Returns true if Vis can draw the whole tree.
+     * @param tree The tree to check.
+     * @return True if the tree is small and shallow enough for Vis.
+     */
+    public static boolean fitsVis(Rbt tree){
+        return tree.size() <= FULL_DRAW_SIZE && height(tree.root) <= FULL_DRAW_HEIGHT;
+    }
+
+    /**
+     * Marks the view for a redraw and drops the counts the change can affect.
+     * Every change marks the view, since rebalancing can rotate or recolor the drawn
+     * nodes, and the size in the header changes too.
+     * @param node The node linked or unlinked.
+     * @param linked True if the node was linked.
+     */
+    @Override
+    public void changed(RbtNode node, boolean linked){
+        dirty = true;
+        long key = node.getData();
+        int i = 0;
+        while(i < countSize){
+            if(countLo[i] < key && key < countHi[i]){
+                // Move the last count into this slot
+                countSize--;
+                countLo[i] = countLo[countSize];
+                countHi[i] = countHi[countSize];
+                counts[i] = counts[countSize];
+            } else{
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Draws the view if the tree or the view changed since the last frame.
+     * @return True if a frame was drawn.
+     */
+    public boolean refresh(){
+        if(!dirty){
+            return false;
+        }
+        show();
+        return true;
+    }
+
+    /**
+     * Clears the screen and draws the view.
+     */
+    public void show(){
+        out.print(CLEAR);
+        out.print(render());
+        out.flush();
+    }
+
+    /**
+     * Builds the current frame and clears the redraw flag.
+     * @return The frame.
+     */
+    public String render(){
+        dirty = false;
+        frame.setLength(0);
+        nextSize = 0;
+        recounted = 0;
+
+        RbtNode node = findFocus();
+        frame.append("Tree size ").append(tree.size()).append(", showing ").append(depth).append(" levels under ");
+        if(node == null){
+            frame.append("an empty tree\n");
+        } else{
+            frame.append(node == tree.root ? "the root" : Integer.toString(node.getData())).append('\n');
+            draw(node, 0, "", '-', focusLo, focusHi);
+        }
+
+        // Keep only the counts this frame used
+        long[] lo = countLo;
+        long[] hi = countHi;
+        int[] found = counts;
+        countLo = nextLo;
+        countHi = nextHi;
+        counts = nextCounts;
+        countSize = nextSize;
+        nextLo = lo;
+        nextHi = hi;
+        nextCounts = found;
+        return frame.toString();
+    }
+
+    /**
+     * Focuses the view on the node with the key, or the closest node above where it would be.
+     * @param key The key to focus on.
+     */
+    public void focus(int key){
+        this.focusKey = key;
+        this.hasFocus = true;
+        this.dirty = true;
+    }
+
+    /**
+     * Focuses the view on the root of the tree.
+     */
+    public void focusRoot(){
+        this.hasFocus = false;
+        this.dirty = true;
+    }
+
+    /**
+     * Moves the focus to the left child of the focused node.
+     * @return False if the focused node has no left child.
+     */
+    public boolean left(){
+        RbtNode node = findFocus();
+        if(node == null || node.getLeft() == null){
+            return false;
+        }
+        focus(node.getLeft().getData());
+        return true;
+    }
+
+    /**
+     * Moves the focus to the right child of the focused node.
+     * @return False if the focused node has no right child.
+     */
+    public boolean right(){
+        RbtNode node = findFocus();
+        if(node == null || node.getRight() == null){
+            return false;
+        }
+        focus(node.getRight().getData());
+        return true;
+    }
+
+    /**
+     * Moves the focus to the parent of the focused node.
+     * @return False if the focused node is the root.
+     */
+    public boolean up(){
+        RbtNode node = findFocus();
+        if(node == null || node.getParent() == null){
+            return false;
+        }
+        focus(node.getParent().getData());
+        return true;
+    }
+
+    /**
+     * Sets how many levels to draw under the focused node.
+     * @param depth The number of levels, from 1 to MAX_DEPTH.
+     */
+    public void setDepth(int depth){
+        if(depth < 1 || depth > MAX_DEPTH){
+            throw new IllegalArgumentException("The depth must be from 1 to " + MAX_DEPTH);
+        }
+        this.depth = depth;
+        this.dirty = true;
+    }
+
+    // Accessors
+    public int getDepth(){
+        return this.depth;
+    }
+    public int recounted(){
+        return this.recounted;
+    }
+
+    /**
+     * Finds the focused node and the range of keys that can be under it.
+     * If the focus key is not in the tree, the last node on its search path is used.
+     * @return The focused node, or null if the tree is empty.
+     */
+    private RbtNode findFocus(){
+        focusLo = Long.MIN_VALUE;
+        focusHi = Long.MAX_VALUE;
+
+        RbtNode cur = tree.root;
+        while(cur != null && hasFocus && cur.getData() != focusKey){
+            RbtNode next = focusKey < cur.getData() ? cur.getLeft() : cur.getRight();
+            if(next == null){
+                break;
+            }
+
+            // Everything under the next node is on this side of the current key
+            if(next == cur.getLeft()){
+                focusHi = cur.getData();
+            } else{
+                focusLo = cur.getData();
+            }
+            cur = next;
+        }
+        return cur;
+    }
+
+    /**
+     * Draws a subtree sideways, the right side above the node and the left side below it.
+     * @param node The node to draw.
+     * @param level How many levels below the focused node this is.
+     * @param prefix The lines from the levels above.
+     * @param branch '/' for a right child, '\' for a left child, '-' for the focused node.
+     * @param lo Every key under the node is greater than this.
+     * @param hi Every key under the node is less than this.
+     */
+    private void draw(RbtNode node, int level, String prefix, char branch, long lo, long hi){
+        if(node == null){
+            return;
+        }
+        boolean cutOff = level == depth - 1;
+
+        // A left child needs a line up to its parent past its right side, and a right child below
+        if(!cutOff){
+            draw(node.getRight(), level + 1, prefix + (branch == '\\' ? "|   " : "    "), '/', node.getData(), hi);
+        }
+
+        frame.append(prefix).append(branch).append("-- ");
+        frame.append(Color.get(Integer.toString(node.getData()), node.getColor() == RbtNode.CL_RED ? Color.FG_RED : Color.FG_DEFAULT));
+        if(cutOff && (node.getLeft() != null || node.getRight() != null)){
+            int below = countBelow(node, lo, hi);
+            frame.append(" [+").append(below).append(below >= COUNT_LIMIT ? " or more]" : "]");
+        }
+        frame.append('\n');
+
+        if(!cutOff){
+            draw(node.getLeft(), level + 1, prefix + (branch == '/' ? "|   " : "    "), '\\', lo, node.getData());
+        }
+    }
+
+    /**
+     * Returns the number of nodes under a cut off node, from the last frame if no
+     * change touched its range since.
+     * @param node The cut off node.
+     * @param lo Every key under the node is greater than this.
+     * @param hi Every key under the node is less than this.
+     * @return The number of nodes under it, at most COUNT_LIMIT.
+     */
+    private int countBelow(RbtNode node, long lo, long hi){
+        int below = -1;
+        for(int i = 0; i < countSize; i++){
+            if(countLo[i] == lo && countHi[i] == hi){
+                below = counts[i];
+                break;
+            }
+        }
+        if(below < 0){
+            below = countNodes(node.getLeft(), COUNT_LIMIT);
+            below += countNodes(node.getRight(), COUNT_LIMIT - below);
+            recounted++;
+        }
+
+        nextLo[nextSize] = lo;
+        nextHi[nextSize] = hi;
+        nextCounts[nextSize] = below;
+        nextSize++;
+        return below;
+    }
+
+    /**
+     * Finds the height of a subtree. Only used on trees small enough for Vis.
+     * @param node The root of the subtree.
+     * @return The number of levels.
+     */
+    private static int height(RbtNode node){
+        if(node == null){
+            return 0;
+        }
+        return 1 + Math.max(height(node.getLeft()), height(node.getRight()));
+    }
+
+    /**
+     * Counts the nodes of a subtree, stopping at the limit.
+     * @param node The root of the subtree.
+     * @param limit The most nodes to count.
+     * @return The number of nodes, at most the limit.
+     */
+    private static int countNodes(RbtNode node, int limit){
+        if(node == null || limit <= 0){
+            return 0;
+        }
+        int left = countNodes(node.getLeft(), limit - 1);
+        return 1 + left + countNodes(node.getRight(), limit - 1 - left);
+    }
+}
+
+
+
+
+/**
+ * The console for trees too big for Vis. It takes the same tree commands as the Vis
+ * menu and prints their results under the view, plus commands to move the view.
+ */
+class TreeViewMenu{
+    // Most keys printed by inorder(), since a big tree has millions
+    public static final int INORDER_LIMIT = 100;
+
+    private static final Pattern WITH_VALUE = Pattern.compile("^\\s*(\\w+)\\s*\\(\\s*(-?\\d+)\\s*\\)\\s*;?\\s*$");
+    private static final Pattern NO_VALUE = Pattern.compile("^\\s*(\\w+)\\s*\\(\\s*\\)\\s*;?\\s*$");
+
+    private final Rbt tree;
+    private final TreeView view;
+    private final PrintStream out;
+
+    // The result of the last command, shown under the next frame
+    private String result = "";
+
+    /**
+     * Creates a console for the tree.
+     * @param tree The tree.
+     * @param view The view of the tree.
+     * @param out Where to print.
+     */
+    public TreeViewMenu(Rbt tree, TreeView view, PrintStream out){
+        this.tree = tree;
+        this.view = view;
+        this.out = out;
+    }
+
+    /**
+     * Returns the Scanner Vis reads its menu from.
+     * Vis reads ahead into its own buffer, so a second Scanner on System.in would
+     * lose piped commands. Both menus read through this one instead.
+     * @return The Scanner of Vis, or a new one on System.in if it can not be reached.
+     */
+    public static Scanner visInput(){
+        try{
+            Field field = Vis.class.getDeclaredField("input");
+            field.setAccessible(true);
+            Scanner input = (Scanner) field.get(null);
+            if(input != null){
+                return input;
+            }
+        } catch(ReflectiveOperationException | RuntimeException e){
+            // Fall back to a Scanner of our own
+        }
+        return new Scanner(System.in);
+    }
+
+    /**
+     * Draws the view and the result of the last command.
+     */
+    public void showTree(){
+        view.show();
+        out.println();
+        out.println(result);
+    }
+
+    /**
+     * Shows the menu, reads one command and runs it.
+     * @param input Where to read the command from.
+     * @return False if the user quit or the input ended.
+     */
+    public boolean showMenu(Scanner input){
+        out.print("\n\n");
+        Color.print("Red Black Tree operations:  insert(value), search(value), min(), max(), size()\n", Color.FG_YELLOW);
+        Color.print("                            delete(value), inorder(), quit()\n", Color.FG_YELLOW);
+        Color.print("View:                       focus(value), left(), right(), up(), root(), depth(levels)\n", Color.FG_YELLOW);
+        Color.print("? ", Color.FG_YELLOW);
+        out.flush();
+        if(!input.hasNextLine()){
+            return false;
+        }
+        return run(input.nextLine());
+    }
+
+    /**
+     * Runs one command and keeps its result for the next frame.
+     * @param line The command.
+     * @return False if the command is quit().
+     */
+    public boolean run(String line){
+        result = "";
+        Matcher withValue = WITH_VALUE.matcher(line);
+        Matcher noValue = NO_VALUE.matcher(line);
+        try{
+            if(withValue.matches()){
+                runWithValue(withValue.group(1), Integer.parseInt(withValue.group(2)));
+            } else if(noValue.matches()){
+                return runNoValue(noValue.group(1));
+            } else{
+                result = "Invalid command. Did you forget parentheses?";
+            }
+        } catch(NumberFormatException e){
+            result = "That value does not fit in an int";
+        } catch(IllegalArgumentException e){
+            result = e.getMessage();
+        }
+        return true;
+    }
+
+    /**
+     * Runs a command that takes a value.
+     * @param name The command name.
+     * @param value The value.
+     */
+    private void runWithValue(String name, int value){
+        switch(name){
+            case "insert":
+                tree.insert(value);
+                break;
+            case "delete":
+                tree.delete(value);
+                break;
+            case "search":
+                result = value + (tree.search(value) ? " was " : " was not ") + "found in the tree";
+                break;
+            case "focus":
+                view.focus(value);
+                break;
+            case "depth":
+                view.setDepth(value);
+                break;
+            default:
+                result = "I can't find a method for that";
+                break;
+        }
+    }
+
+    /**
+     * Runs a command that takes no value.
+     * @param name The command name.
+     * @return False if the command is quit().
+     */
+    private boolean runNoValue(String name){
+        switch(name){
+            case "quit":
+                return false;
+            case "min":
+                result = "Minimum value is: " + tree.min();
+                break;
+            case "max":
+                result = "Maximum value is: " + tree.max();
+                break;
+            case "size":
+                result = "The number of nodes in the tree is " + tree.size();
+                break;
+            case "inorder":
+                result = "In order traversal: " + inorder();
+                break;
+            case "left":
+                result = view.left() ? "" : "The focused node has no left child";
+                break;
+            case "right":
+                result = view.right() ? "" : "The focused node has no right child";
+                break;
+            case "up":
+                result = view.up() ? "" : "The focused node is the root";
+                break;
+            case "root":
+                view.focusRoot();
+                break;
+            default:
+                result = "I can't find a method for that";
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Lists the smallest keys in order, up to INORDER_LIMIT.
+     * @return The keys, and how many more there are.
+     */
+    private String inorder(){
+        StringBuilder keys = new StringBuilder();
+        RbtCursor cursor = tree.cursor();
+        for(int i = 0; i < INORDER_LIMIT && cursor.hasNext(); i++){
+            keys.append(cursor.next()).append(' ');
+        }
+        if(tree.size() > INORDER_LIMIT){
+            keys.append("... and ").append(tree.size() - INORDER_LIMIT).append(" more");
+        }
+        return keys.toString();
+    }
+}